@@ -0,0 +1,44 @@
+package com.example.test.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the selected benchmarks once per configured thread count.
+ *
+ * <p>Configured through system properties: {@code jmh.include} (benchmark regex),
+ * {@code jmh.threads} (comma-separated thread counts) and {@code jmh.sizes} (comma-separated
+ * dataset sizes). Results are written as JSON to {@code target/jmh/threads-<n>.json} so that runs
+ * can be compared to catch regressions.</p>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("jmh.include", ".*Benchmark.*");
+        String[] threadCounts = System.getProperty("jmh.threads", "1,2,4,8").split(",");
+        String[] sizes = System.getProperty("jmh.sizes", "1000,100000,1000000,10000000").split(",");
+
+        File results = new File("target/jmh");
+        results.mkdirs();
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .param("size", sizes)
+                    .threads(threads)
+                    .jvmArgsPrepend(System.getProperty("jmh.jvmArgs", "-Xmx8g").split(" "))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "threads-" + threads + ".json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.test.benchmark;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.repository.UserRepository;
+
+import java.time.LocalDate;
+
+/**
+ * Deterministic user fixtures shared by the benchmarks.
+ */
+final class BenchmarkUsers {
+
+    static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+    static final int BIRTH_DATE_SPAN_DAYS = 55 * 365;
+
+    private BenchmarkUsers() {
+    }
+
+    static User user(long id) {
+        return new User(id, email(id), "First" + id, "Last" + id,
+                FIRST_BIRTH_DATE.plusDays(Math.floorMod(id * 7919, BIRTH_DATE_SPAN_DAYS)),
+                id + " Main Street", "+38050" + String.format("%07d", id % 10_000_000));
+    }
+
+    static String email(long id) {
+        return "user" + id + "@example.com";
+    }
+
+    /**
+     * Creates a repository holding users with IDs from 1 to {@code size}.
+     */
+    static UserRepository repository(int size) {
+        UserRepository userRepository = new LocalUserRepository();
+        for (long first = 1; first <= size; first += 10_000) {
+            long from = first;
+            userRepository.executeInBatch(() -> {
+                for (long id = from; id < from + 10_000 && id <= size; id++) {
+                    userRepository.save(user(id));
+                }
+                return null;
+            });
+        }
+        return userRepository;
+    }
+}
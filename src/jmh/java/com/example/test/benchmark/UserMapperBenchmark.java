@@ -0,0 +1,65 @@
+package com.example.test.benchmark;
+
+import com.example.test.mapper.UserMapper;
+import com.example.test.model.User;
+import com.example.test.model.dto.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link UserMapper} conversions and Jackson (de)serialization of a single {@link User}.
+ *
+ * <p>These costs do not depend on the number of stored users, so the benchmark has no dataset size.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private User user;
+    private UserDto userDto;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        userMapper = new UserMapper(objectMapper);
+        writer = objectMapper.writerFor(User.class);
+        reader = objectMapper.readerFor(User.class);
+        user = BenchmarkUsers.user(42);
+        userDto = userMapper.toDTO(user);
+        json = writer.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User toEntity() {
+        return userMapper.toEntity(userDto);
+    }
+
+    @Benchmark
+    public UserDto toDTO() {
+        return userMapper.toDTO(user);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.test.benchmark;
+
+import com.example.test.model.User;
+import com.example.test.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link UserRepository} hot paths against a pre-populated store.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private UserRepository userRepository;
+
+    private User patch;
+
+    private LocalDate wideRangeFrom;
+
+    private LocalDate wideRangeTo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userRepository = BenchmarkUsers.repository(size);
+        patch = new User().withFirstName("Updated").withAddress("Updated address");
+        wideRangeFrom = BenchmarkUsers.FIRST_BIRTH_DATE.plusDays(BenchmarkUsers.BIRTH_DATE_SPAN_DAYS / 4);
+        wideRangeTo = BenchmarkUsers.FIRST_BIRTH_DATE.plusDays(BenchmarkUsers.BIRTH_DATE_SPAN_DAYS * 3 / 4);
+    }
+
+    /**
+     * Gives every benchmark thread its own slice of IDs, so that delete and re-insert pairs
+     * from different threads never touch the same user.
+     */
+    @State(Scope.Thread)
+    public static class IdSlice {
+
+        private long offset;
+        private long stride;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkParams benchmarkParams, ThreadParams threadParams) {
+            offset = threadParams.getThreadIndex();
+            stride = benchmarkParams.getThreads();
+        }
+
+        long next(int size) {
+            long slots = Math.max(1, (size - offset + stride - 1) / stride);
+            return 1 + offset + ThreadLocalRandom.current().nextLong(slots) * stride;
+        }
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return userRepository.findById(ThreadLocalRandom.current().nextLong(1, size + 1L));
+    }
+
+    /**
+     * Finds the users born in the middle half of the generated birth dates, which is answered by
+     * a parallel scan of the birth date column.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<User> findByWideBirthDateRange() {
+        return userRepository.findByBirthDateAfterAndBirthDateBefore(wideRangeFrom, wideRangeTo);
+    }
+
+    @Benchmark
+    public User update() {
+        return userRepository.update(ThreadLocalRandom.current().nextLong(1, size + 1L), patch);
+    }
+
+    /**
+     * Deletes a user by email and inserts it again, keeping the dataset size constant.
+     */
+    @Benchmark
+    public User deleteByEmailAndReinsert(IdSlice slice) {
+        long id = slice.next(size);
+        userRepository.deleteByEmail(BenchmarkUsers.email(id));
+        return userRepository.save(BenchmarkUsers.user(id));
+    }
+}
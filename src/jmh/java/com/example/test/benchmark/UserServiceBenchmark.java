@@ -0,0 +1,55 @@
+package com.example.test.benchmark;
+
+import com.example.test.mapper.UserMapper;
+import com.example.test.model.User;
+import com.example.test.repository.UserRepository;
+import com.example.test.service.cache.UserJsonCache;
+import com.example.test.service.cache.UserResponseCache;
+import com.example.test.service.changes.UserChangeLog;
+import com.example.test.service.impl.UserServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link UserServiceImpl#getUsersByBirthDateRange} for ranges of different widths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"7", "365"})
+    public int rangeDays;
+
+    private UserServiceImpl userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MockEnvironment env = new MockEnvironment().withProperty("user.min.age", "18");
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        UserRepository userRepository = BenchmarkUsers.repository(size);
+        userService = new UserServiceImpl(userRepository, new UserMapper(objectMapper),
+                new UserResponseCache(new UserJsonCache(objectMapper, userRepository, size), 1024, 64L << 20, null),
+                new UserChangeLog(userRepository, env), env);
+    }
+
+    @Benchmark
+    public List<User> getUsersByBirthDateRange() {
+        LocalDate from = BenchmarkUsers.FIRST_BIRTH_DATE.plusDays(
+                ThreadLocalRandom.current().nextInt(BenchmarkUsers.BIRTH_DATE_SPAN_DAYS - rangeDays));
+        return userService.getUsersByBirthDateRange(from, from.plusDays(rangeDays));
+    }
+}
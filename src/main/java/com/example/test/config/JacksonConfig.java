@@ -1,10 +1,22 @@
 package com.example.test.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 
+/**
+ * Configures Jackson for JSON and for the binary formats offered alongside it.
+ *
+ * <p>Requests and responses are also read and written as Smile ({@code application/x-jackson-smile})
+ * or CBOR ({@code application/cbor}) when the client asks for them with {@code Content-Type} or
+ * {@code Accept}. Both mappers come from the same builder as the JSON one, so users look the same
+ * in every format.</p>
+ */
 @Configuration
 public class JacksonConfig {
 
@@ -14,4 +26,14 @@ public class JacksonConfig {
 
         return objectMapper;
     }
-}
\ No newline at end of file
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
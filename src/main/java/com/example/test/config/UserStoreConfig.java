@@ -0,0 +1,109 @@
+package com.example.test.config;
+
+import com.example.test.model.dto.UserShardStatus;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.repository.RemoteUserRepository;
+import com.example.test.repository.ShardedUserRepository;
+import com.example.test.repository.UserRepository;
+import com.example.test.repository.storage.HeapUserRecordStore;
+import com.example.test.repository.storage.MappedUserRecordStore;
+import com.example.test.repository.storage.UserRecordStore;
+import com.example.test.repository.storage.UserStorePersistence;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Selects the primary {@link UserRecordStore} with {@code user.store.backend} and the
+ * {@link UserRepository} built on top of it.
+ *
+ * <p>{@code heap} (the default) keeps users as Java objects. {@code mapped} keeps them in a
+ * memory-mapped file, which is persistent by itself and therefore cannot be combined with
+ * {@code user.store.persistence.enabled}.</p>
+ *
+ * <p>By default a single {@link LocalUserRepository} holds every user. {@code user.store.shards}
+ * above one partitions the users by ID over that many in-memory repositories in this process.
+ * {@code user.store.remote-shards} instead lists the base URLs of other instances that run with
+ * {@code user.store.shard-endpoint.enabled}; the instance at position {@code k} of {@code n} must
+ * be started with {@code user.store.id-stride=n} and {@code user.store.id-offset=k}, and must not be
+ * written by anyone but this router. Calls to them fail after
+ * {@code user.store.remote-shards.request-timeout-ms}.</p>
+ */
+@Configuration
+public class UserStoreConfig {
+
+    @Bean
+    public UserRecordStore userRecordStore(Environment env) throws IOException {
+        String backend = env.getProperty("user.store.backend", "heap").toLowerCase(Locale.ROOT);
+        switch (backend) {
+            case "heap":
+                return new HeapUserRecordStore();
+            case "mapped":
+                if (env.getProperty("user.store.persistence.enabled", Boolean.class, false)) {
+                    throw new IllegalStateException("The mapped user store cannot be combined with user.store.persistence");
+                }
+                return new MappedUserRecordStore(Path.of(env.getProperty("user.store.mapped.file", "data/users.dat")),
+                        env.getProperty("user.store.mapped.expected-size", Integer.class, 1_000_000));
+            default:
+                throw new IllegalStateException("Unknown user.store.backend: " + backend);
+        }
+    }
+
+    @Bean
+    public UserRepository userRepository(UserRecordStore store, ObjectProvider<UserStorePersistence> persistence,
+                                         ObjectMapper objectMapper, Environment env) throws IOException {
+        int shards = env.getProperty("user.store.shards", Integer.class, 1);
+        String remoteShards = env.getProperty("user.store.remote-shards", "").trim();
+        if (!remoteShards.isEmpty()) {
+            if (shards > 1 || persistence.getIfAvailable() != null) {
+                throw new IllegalStateException(
+                        "user.store.remote-shards cannot be combined with user.store.shards or user.store.persistence");
+            }
+            return remoteShards(Arrays.stream(remoteShards.split(",")).map(String::trim).toList(), objectMapper,
+                    Duration.ofMillis(env.getProperty("user.store.remote-shards.request-timeout-ms", Long.class, 30_000L)));
+        }
+        if (shards > 1) {
+            if (!(store instanceof HeapUserRecordStore) || persistence.getIfAvailable() != null) {
+                throw new IllegalStateException(
+                        "user.store.shards requires the heap user store without user.store.persistence");
+            }
+            List<LocalUserRepository> repositories = new ArrayList<>(shards);
+            for (int shard = 0; shard < shards; shard++) {
+                LocalUserRepository repository = new LocalUserRepository(
+                        shard == 0 ? store : new HeapUserRecordStore(), null, false, shards, shard);
+                repository.recover();
+                repositories.add(repository);
+            }
+            return new ShardedUserRepository(repositories);
+        }
+        return new LocalUserRepository(store, persistence.getIfAvailable(),
+                env.getProperty("user.store.index.background-build", Boolean.class, true),
+                env.getProperty("user.store.id-stride", Long.class, 1L),
+                env.getProperty("user.store.id-offset", Long.class, 0L));
+    }
+
+    private static UserRepository remoteShards(List<String> urls, ObjectMapper objectMapper, Duration requestTimeout) {
+        List<RemoteUserRepository> repositories = new ArrayList<>(urls.size());
+        for (int shard = 0; shard < urls.size(); shard++) {
+            RemoteUserRepository repository = new RemoteUserRepository(urls.get(shard), objectMapper, requestTimeout);
+            UserShardStatus status = repository.status();
+            if (status.getIdStride() != urls.size() || status.getIdOffset() != shard) {
+                throw new IllegalStateException("User shard " + urls.get(shard) + " allocates IDs with stride "
+                        + status.getIdStride() + " and offset " + status.getIdOffset() + ", expected "
+                        + urls.size() + " and " + shard);
+            }
+            repositories.add(repository);
+        }
+        return new ShardedUserRepository(repositories);
+    }
+}
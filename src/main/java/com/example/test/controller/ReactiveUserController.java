@@ -0,0 +1,95 @@
+package com.example.test.controller;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserDto;
+import com.example.test.service.ReactiveUserService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Reactive variant of the user API.
+ *
+ * <p>Queries are streamed as newline-delimited JSON or server-sent events. Each user is
+ * requested from the query only after the previous one has been written, so a slow client holds
+ * back the query instead of a fully built response.</p>
+ *
+ * <p>This API runs on Spring MVC, not on a non-blocking server. MVC writes each element with a
+ * blocking servlet write on its task executor ({@code spring.task.execution.pool.*}), so a slow
+ * client still holds an executor thread while a write to it is blocked, and enough slow clients
+ * delay every other stream. With {@code spring.threads.virtual.enabled} on Java 21, the executor
+ * uses virtual threads, which makes a blocked write cheap but does not remove it.</p>
+ *
+ * @see ReactiveUserService
+ */
+@RestController
+@RequestMapping("/api/v1/reactive/users")
+@AllArgsConstructor
+public class ReactiveUserController {
+
+    private final ReactiveUserService reactiveUserService;
+
+    /**
+     * Streams all users.
+     *
+     * @return Flux of all users
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<User> getAllUsers() {
+        return reactiveUserService.getAllUsers();
+    }
+
+    /**
+     * Streams users within a specified birth date range.
+     *
+     * @param fromDate The start date of the range (format: "yyyy-MM-dd")
+     * @param toDate   The end date of the range (format: "yyyy-MM-dd")
+     * @return Flux of users within the specified birth date range
+     */
+    @GetMapping(value = "/birthDate", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<User> getUsersByBirthDateRange(@RequestParam("fromDate") String fromDate,
+                                               @RequestParam("toDate") String toDate) {
+        return reactiveUserService.getUsersByBirthDateRange(LocalDate.parse(fromDate), LocalDate.parse(toDate));
+    }
+
+    /**
+     * Creates a new {@link User}.
+     *
+     * @param userDto {@link UserDto} object containing {@link User} information
+     * @return Mono of a ResponseEntity with the created {@link User} and {@link HttpStatus} CREATED
+     */
+    @PostMapping
+    public Mono<ResponseEntity<User>> createUser(@RequestBody UserDto userDto) {
+        return reactiveUserService.createUser(userDto)
+                .map(user -> ResponseEntity.status(HttpStatus.CREATED).body(user));
+    }
+
+    /**
+     * Deletes a {@link User} by email.
+     *
+     * @param email The email of the {@link User} to be deleted
+     * @return Mono of a {@link ResponseEntity} with {@link HttpStatus} NO_CONTENT
+     */
+    @DeleteMapping("/{email}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable String email) {
+        return reactiveUserService.deleteUser(email)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    /**
+     * Handles {@link IllegalArgumentException} thrown by controller methods or signalled by their publishers.
+     *
+     * @param ex The {@link IllegalArgumentException}
+     * @return {@link ResponseEntity} with the exception message and {@link HttpStatus} BAD_REQUEST
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body(ex.getMessage());
+    }
+}
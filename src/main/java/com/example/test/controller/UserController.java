@@ -1,15 +1,44 @@
 package com.example.test.controller;
 
+import com.example.test.mapper.UserMapper;
 import com.example.test.model.User;
+import com.example.test.model.dto.UserBatchOperation;
+import com.example.test.model.dto.UserBatchResult;
+import com.example.test.model.dto.UserChangeBatch;
 import com.example.test.model.dto.UserDto;
+import com.example.test.model.dto.UserFilter;
+import com.example.test.model.dto.UserImportResult;
+import com.example.test.model.dto.UserStoreStatus;
+import com.example.test.repository.UserVersionConflictException;
+import com.example.test.service.UserImportAbortedException;
 import com.example.test.service.UserService;
+import com.example.test.service.cache.CachedResponse;
+import com.example.test.service.cache.UserJsonCache;
+import com.example.test.service.changes.UserChangesExpiredException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 /**
  * Controller for managing user-related operations.
  *
@@ -26,17 +55,172 @@ import java.util.List;
 @AllArgsConstructor
 public class UserController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+
     private final UserService userService;
 
+    private final ObjectMapper objectMapper;
+
+    private final UserMapper userMapper;
+
+    private final UserJsonCache jsonCache;
+
     /**
      * Retrieves all users.
      *
-     * @return ResponseEntity with a list of all users and {@link HttpStatus} OK
+     * <p>The response carries a weak ETag that changes whenever a user is written. A request
+     * whose {@code If-None-Match} header matches it is answered with {@link HttpStatus} NOT_MODIFIED.
+     * Results too large for the response cache are streamed while they are serialized.</p>
+     *
+     * @param request The current request, checked against the ETag
+     * @return ResponseEntity with a JSON array of all users and {@link HttpStatus} OK
      */
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<StreamingResponseBody> getAllUsers(WebRequest request) {
+        return cachedJson(userService.getAllUsersJson(), request);
+    }
+
+    /**
+     * Retrieves all users in a binary format for internal callers.
+     *
+     * <p>The list is encoded on each request rather than served from the JSON response cache,
+     * and carries no ETag.</p>
+     *
+     * @return ResponseEntity with a Smile or CBOR array of all users and {@link HttpStatus} OK
+     */
+    @GetMapping(produces = {SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<User>> getAllUsersBinary() {
+        return ResponseEntity.ok(userService.getAllUsers());
+    }
+
+    /**
+     * Retrieves one page of users ordered by ID.
+     *
+     * <p>When the page is full, the ID of its last {@link User} is returned in the
+     * {@value #NEXT_CURSOR_HEADER} header and can be passed as {@code after} to fetch the next page.</p>
+     *
+     * @param limit The maximum number of users in the page
+     * @param after The ID to continue after (optional)
+     * @return ResponseEntity with a JSON array of the page of users and {@link HttpStatus} OK
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<StreamingResponseBody> getUsersPage(@RequestParam("limit") int limit,
+                                                              @RequestParam(value = "after", required = false) Long after) {
+        long stamp = jsonCache.stamp();
+        List<User> users = userService.getUsersPage(after, limit);
+        return nextCursor(users, limit).contentType(MediaType.APPLICATION_JSON).body(jsonArray(users, stamp));
+    }
+
+    /**
+     * Retrieves one page of users ordered by ID in a binary format for internal callers.
+     *
+     * @param limit The maximum number of users in the page
+     * @param after The ID to continue after (optional)
+     * @return ResponseEntity with a Smile or CBOR array of the page of users and {@link HttpStatus} OK
+     */
+    @GetMapping(params = "limit", produces = {SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<User>> getUsersPageBinary(@RequestParam("limit") int limit,
+                                                         @RequestParam(value = "after", required = false) Long after) {
+        List<User> users = userService.getUsersPage(after, limit);
+        return nextCursor(users, limit).body(users);
+    }
+
+    /**
+     * Retrieves a {@link User} by ID.
+     *
+     * @param id The ID of the {@link User}
+     * @return ResponseEntity with the {@link User}, its version as ETag and {@link HttpStatus} OK,
+     *         or {@link HttpStatus} NOT_FOUND if there is no such user
+     */
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+        return userService.getUserById(id).map(this::versioned).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Retrieves a {@link User} by email.
+     *
+     * @param email The email of the {@link User}
+     * @return ResponseEntity with the {@link User} and {@link HttpStatus} OK,
+     *         or {@link HttpStatus} NOT_FOUND if there is no such user
+     */
+    @GetMapping(params = "email")
+    public ResponseEntity<User> getUserByEmail(@RequestParam("email") String email) {
+        return ResponseEntity.of(userService.getUserByEmail(email));
+    }
+
+    /**
+     * Retrieves several users by ID in one request, e.g. {@code ?ids=1,2,3}.
+     *
+     * @param ids The IDs to look up
+     * @return ResponseEntity with the users found, in the requested order, and {@link HttpStatus} OK
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<User>> getUsersByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(userService.getUsersByIds(ids));
+    }
+
+    /**
+     * Searches users by prefix over first name, last name, email and address.
+     *
+     * @param query The search text, e.g. {@code "jo do"} matches John Doe
+     * @param limit The maximum number of users to return (default 20)
+     * @return ResponseEntity with a JSON array of the best matching users, best match first, and {@link HttpStatus} OK
+     */
+    @GetMapping("/search")
+    public ResponseEntity<StreamingResponseBody> searchUsers(@RequestParam("q") String query,
+                                                             @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        long stamp = jsonCache.stamp();
+        List<User> users = userService.searchUsers(query, limit);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(jsonArray(users, stamp));
+    }
+
+    /**
+     * Searches users in a binary format for internal callers.
+     *
+     * @param query The search text
+     * @param limit The maximum number of users to return (default 20)
+     * @return ResponseEntity with a Smile or CBOR array of the best matching users and {@link HttpStatus} OK
+     */
+    @GetMapping(value = "/search", produces = {SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<User>> searchUsersBinary(@RequestParam("q") String query,
+                                                        @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(userService.searchUsers(query, limit));
+    }
+
+    /**
+     * Retrieves users matching a combination of filters, e.g.
+     * {@code ?minAge=18&maxAge=30&emailDomain=example.com&lastNamePrefix=Do&hasPhoneNumber=true}.
+     *
+     * @param filter The {@link UserFilter} bound from the query parameters
+     * @return ResponseEntity with the matching users in ascending ID order and {@link HttpStatus} OK
+     */
+    @GetMapping("/filter")
+    public ResponseEntity<List<User>> filterUsers(UserFilter filter) {
+        return ResponseEntity.ok(userService.filterUsers(filter));
+    }
+
+    /**
+     * Streams all users as newline-delimited JSON, one {@link User} per line.
+     *
+     * <p>Users are written to the response while the store is walked, so neither heap usage
+     * nor time to first byte depends on the number of users.</p>
+     *
+     * @return ResponseEntity with a streaming body and {@link HttpStatus} OK
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = outputStream -> {
+            long stamp = jsonCache.stamp();
+            try (Stream<User> users = userService.streamAllUsers()) {
+                jsonCache.writeLines(users, stamp, outputStream);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     /**
@@ -56,30 +240,96 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
     }
 
+    /**
+     * Applies a JSON, Smile or CBOR array of create, update and delete operations in one pass.
+     *
+     * @param operations The {@link UserBatchOperation}s to apply
+     * @return ResponseEntity with one {@link UserBatchResult} per operation and {@link HttpStatus} OK
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<UserBatchResult>> applyBatch(@RequestBody List<UserBatchOperation> operations) {
+        return ResponseEntity.ok(userService.applyBatch(operations));
+    }
+
+    /**
+     * Applies newline-delimited JSON operations, one {@link UserBatchOperation} per line, in one pass.
+     *
+     * <p>Lines are parsed only until the batch is known to be too large, so an oversized body is
+     * rejected with {@link HttpStatus} BAD_REQUEST without reading it to the end.</p>
+     *
+     * @param body The request body
+     * @return ResponseEntity with one {@link UserBatchResult} per operation and {@link HttpStatus} OK
+     * @throws IOException if the body cannot be read or parsed
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<UserBatchResult>> applyNdjsonBatch(InputStream body) throws IOException {
+        try (MappingIterator<UserBatchOperation> iterator =
+                     objectMapper.readerFor(UserBatchOperation.class).readValues(body)) {
+            return ResponseEntity.ok(userService.applyBatch(iterator));
+        }
+    }
+
+    /**
+     * Imports users from a JSON array or newline-delimited JSON body of any size.
+     *
+     * <p>The body is parsed incrementally and records are applied in bounded chunks,
+     * so memory usage does not grow with the size of the upload. If the JSON turns out to be
+     * malformed, the records before the error stay imported and the response is
+     * {@link HttpStatus} BAD_REQUEST with the {@link UserImportResult} so far.</p>
+     *
+     * @param body The request body
+     * @return ResponseEntity with the {@link UserImportResult} and {@link HttpStatus} OK
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<UserImportResult> importJsonUsers(InputStream body) throws IOException {
+        try (UserMapper.JsonRecords users = userMapper.readJsonRecords(body)) {
+            return ResponseEntity.ok(userService.importUsers(users));
+        }
+    }
+
+    /**
+     * Imports users from a CSV body with a header row, streaming it in bounded chunks.
+     *
+     * @param body The request body
+     * @return ResponseEntity with the {@link UserImportResult} and {@link HttpStatus} OK
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<UserImportResult> importCsvUsers(InputStream body) throws IOException {
+        InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+        return ResponseEntity.ok(userService.importUsers(userMapper.readCsvRecords(reader)));
+    }
+
     /**
      * Updates an existing {@link User}.
      *
+     * <p>With an {@code If-Match} header holding the ETag of a previous response for this user, the
+     * update only applies if the user has not been changed since.</p>
+     *
      * @param id       The ID of the {@link User} to be updated
      * @param userDTO  {@link UserDto} object containing updated {@link User} information
-     * @return ResponseEntity with the updated {@link User} and {@link HttpStatus} OK
+     * @param ifMatch  The optional {@code If-Match} header
+     * @return ResponseEntity with the updated {@link User}, its version as ETag and {@link HttpStatus} OK
      */
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody UserDto userDTO) {
-        User updatedUser = userService.updateUser(id, userDTO);
-        return ResponseEntity.ok(updatedUser);
+    public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody UserDto userDTO,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return versioned(update(id, userDTO, ifMatch));
     }
 
     /**
-     * Partially updates an existing {@link User}.
+     * Partially updates an existing {@link User}, honouring {@code If-Match} like {@link #updateUser}.
      *
      * @param id       The ID of the {@link User} to be updated
      * @param userDTO  {@link UserDto} object containing updated {@link User} information
-     * @return ResponseEntity with the updated user and {@link HttpStatus} OK
+     * @param ifMatch  The optional {@code If-Match} header
+     * @return ResponseEntity with the updated user, its version as ETag and {@link HttpStatus} OK
      */
     @PatchMapping("/{id}")
-    public ResponseEntity<User> patchUser(@PathVariable Long id, @RequestBody UserDto userDTO) {
-        User updatedUser = userService.updateUser(id, userDTO);
-        return ResponseEntity.ok(updatedUser);
+    public ResponseEntity<User> patchUser(@PathVariable Long id, @RequestBody UserDto userDTO,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return versioned(update(id, userDTO, ifMatch));
     }
 
     /**
@@ -99,15 +349,257 @@ public class UserController {
      *
      * @param fromDate The start date of the range (format: "yyyy-MM-dd")
      * @param toDate   The end date of the range (format: "yyyy-MM-dd")
-     * @return ResponseEntity with a list of users within the specified birth date range and {@link HttpStatus} OK
+     * @param request  The current request, checked against the ETag
+     * @return ResponseEntity with a JSON array of users within the specified birth date range and {@link HttpStatus} OK,
+     *         or {@link HttpStatus} NOT_MODIFIED if the {@code If-None-Match} ETag is still current
      */
     @GetMapping("/birthDate")
-    public ResponseEntity<List<User>> getUsersByBirthDateRange(@RequestParam("fromDate") String fromDate,
-                                                               @RequestParam("toDate") String toDate) {
+    public ResponseEntity<StreamingResponseBody> getUsersByBirthDateRange(@RequestParam("fromDate") String fromDate,
+                                                                          @RequestParam("toDate") String toDate,
+                                                                          WebRequest request) {
         LocalDate from = LocalDate.parse(fromDate);
         LocalDate to = LocalDate.parse(toDate);
-        List<User> users = userService.getUsersByBirthDateRange(from, to);
-        return ResponseEntity.ok(users);
+        return cachedJson(userService.getUsersByBirthDateRangeJson(from, to), request);
+    }
+
+    /**
+     * Retrieves users within a specified birth date range in a binary format for internal callers.
+     *
+     * @param fromDate The start date of the range (format: "yyyy-MM-dd")
+     * @param toDate   The end date of the range (format: "yyyy-MM-dd")
+     * @return ResponseEntity with a Smile or CBOR array of users within the range and {@link HttpStatus} OK
+     */
+    @GetMapping(value = "/birthDate", produces = {SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<User>> getUsersByBirthDateRangeBinary(@RequestParam("fromDate") String fromDate,
+                                                                     @RequestParam("toDate") String toDate) {
+        return ResponseEntity.ok(userService.getUsersByBirthDateRange(LocalDate.parse(fromDate), LocalDate.parse(toDate)));
+    }
+
+    /**
+     * Reports whether the user store has finished building its secondary indexes.
+     *
+     * <p>The application serves requests while indexes are still being built, so an orchestrator
+     * can route traffic as soon as this endpoint answers and use {@code indexesReady} to decide
+     * when indexed queries run at full speed.</p>
+     *
+     * @return ResponseEntity with the {@link UserStoreStatus} and {@link HttpStatus} OK
+     */
+    @GetMapping("/status")
+    public ResponseEntity<UserStoreStatus> getStoreStatus() {
+        return ResponseEntity.ok(userService.getStoreStatus());
+    }
+
+    /**
+     * Long-polls the change feed for the users created, updated and deleted after a cursor,
+     * e.g. {@code ?since=42&limit=500}.
+     *
+     * <p>Without {@code since}, the response carries no changes and the current cursor as
+     * {@code lastSequence}. A client switching to incremental sync reads the cursor first, then
+     * loads all users once and from then on polls with the {@code lastSequence} of the previous
+     * response. A poll with nothing to return is held open until the next change or the poll
+     * timeout. Changes that have been evicted, or a cursor from before a restart, are answered
+     * with {@link HttpStatus} GONE, after which the client has to load all users again.</p>
+     *
+     * @param since The sequence of the last change seen (optional)
+     * @param limit The maximum number of changes to return (optional)
+     * @return A future of the ResponseEntity with the {@link UserChangeBatch} and {@link HttpStatus} OK
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<UserChangeBatch>> pollChanges(
+            @RequestParam(value = "since", required = false) Long since,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return userService.pollChanges(since, limit).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Streams the change feed as server-sent events, starting after {@code since}, after the
+     * {@code Last-Event-ID} of a reconnecting {@code EventSource}, or at the latest change.
+     *
+     * <p>Each {@code changes} event carries a {@link UserChangeBatch} of the changes that arrived
+     * since the previous event, with its {@code lastSequence} as event ID. Idle streams receive a
+     * comment once per poll timeout, which also detects clients that went away. A client that
+     * falls so far behind that its changes are evicted receives an {@code expired} event and the
+     * stream ends.</p>
+     *
+     * @param since       The sequence of the last change seen (optional)
+     * @param lastEventId The ID of the last event received before reconnecting (optional)
+     * @return The {@link SseEmitter} writing the stream
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "since", required = false) Long since,
+                                    @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId) {
+        Long cursor = lastEventId != null ? lastEventId : since;
+        if (cursor == null) {
+            cursor = userService.pollChanges(null, null).join().getLastSequence();
+        }
+        CompletableFuture<UserChangeBatch> first = userService.pollChanges(cursor, null);
+
+        // Idle streams are kept alive by the comments sent on every empty poll instead of a timeout
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onError(error -> open.set(false));
+        sendChanges(emitter, open, first);
+        return emitter;
+    }
+
+    /**
+     * Sends each batch once its poll completes and polls again from its cursor until the stream closes.
+     *
+     * <p>Polls that are already complete are handled in this loop; only a pending poll registers
+     * a callback, which re-enters the loop on the thread that completes it. The stack therefore
+     * stays flat however many batches are ready back to back.</p>
+     */
+    private void sendChanges(SseEmitter emitter, AtomicBoolean open, CompletableFuture<UserChangeBatch> first) {
+        CompletableFuture<UserChangeBatch> poll = first;
+        while (poll != null && open.get()) {
+            if (!poll.isDone()) {
+                // 0: registering, 1: left to the callback, 2: completed while registering, handled here
+                AtomicInteger state = new AtomicInteger();
+                CompletableFuture<UserChangeBatch> pending = poll;
+                pending.whenComplete((batch, error) -> {
+                    if (!state.compareAndSet(0, 2)) {
+                        sendChanges(emitter, open, pending);
+                    }
+                });
+                if (state.compareAndSet(0, 1)) {
+                    return;
+                }
+            }
+            poll = sendBatch(emitter, open, poll);
+        }
+    }
+
+    /**
+     * Sends the result of a completed poll.
+     *
+     * @return The next poll, or null if the stream has ended
+     */
+    private CompletableFuture<UserChangeBatch> sendBatch(SseEmitter emitter, AtomicBoolean open,
+                                                         CompletableFuture<UserChangeBatch> poll) {
+        try {
+            UserChangeBatch batch;
+            try {
+                batch = poll.join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (!(cause instanceof UserChangesExpiredException)) {
+                    open.set(false);
+                    emitter.completeWithError(cause);
+                    return null;
+                }
+                emitter.send(SseEmitter.event().name("expired").data(cause.getMessage()));
+                emitter.complete();
+                return null;
+            }
+            if (batch.getChanges().isEmpty()) {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } else {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(batch.getLastSequence()))
+                        .name("changes")
+                        .data(batch, MediaType.APPLICATION_JSON));
+            }
+            return userService.pollChanges(batch.getLastSequence(), null);
+        } catch (IOException | RuntimeException e) {
+            open.set(false);
+            emitter.completeWithError(e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts a response carrying the {@value #NEXT_CURSOR_HEADER} header if the page is full.
+     */
+    private static ResponseEntity.BodyBuilder nextCursor(List<User> users, int limit) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (users.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+        }
+        return response;
+    }
+
+    /**
+     * Writes users as a JSON array assembled from their cached fragments.
+     */
+    private StreamingResponseBody jsonArray(List<User> users, long stamp) {
+        return outputStream -> jsonCache.writeArray(users.stream(), stamp, outputStream);
+    }
+
+    /**
+     * Wraps a cached JSON result with its ETag. A request whose {@code If-None-Match} header matches
+     * it is answered with {@link HttpStatus} NOT_MODIFIED and no body, without running the query.
+     */
+    private static ResponseEntity<StreamingResponseBody> cachedJson(CachedResponse response, WebRequest request) {
+        if (request.checkNotModified(response.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(response.getETag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response::writeTo);
+    }
+
+    /**
+     * Wraps a {@link User} with its version as a strong ETag.
+     */
+    private ResponseEntity<User> versioned(User user) {
+        return ResponseEntity.ok().eTag(String.valueOf(user.getVersion())).body(user);
+    }
+
+    private User update(Long id, UserDto userDTO, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return userService.updateUser(id, userDTO);
+        }
+        return userService.updateUser(id, userDTO, expectedVersion(ifMatch.trim()));
+    }
+
+    /**
+     * Reads the user version from an {@code If-Match} ETag. Weak ETags never match a single user.
+     */
+    private static long expectedVersion(String eTag) {
+        if (eTag.length() < 3 || eTag.charAt(0) != '"' || eTag.charAt(eTag.length() - 1) != '"') {
+            throw new IllegalArgumentException("If-Match must be a single strong ETag of the user");
+        }
+        try {
+            return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be a single strong ETag of the user");
+        }
+    }
+
+    /**
+     * Handles {@link UserVersionConflictException} thrown by conditional updates.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with the error message and {@link HttpStatus} PRECONDITION_FAILED
+     */
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<String> handleUserVersionConflictException(UserVersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getMessage());
+    }
+
+    /**
+     * Handles {@link UserChangesExpiredException} thrown when reading the change feed.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with the error message and {@link HttpStatus} GONE
+     */
+    @ExceptionHandler(UserChangesExpiredException.class)
+    public ResponseEntity<String> handleUserChangesExpiredException(UserChangesExpiredException ex) {
+        return ResponseEntity.status(HttpStatus.GONE).body(ex.getMessage());
+    }
+
+    /**
+     * Handles {@link UserImportAbortedException} thrown when an import body is malformed.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with the {@link UserImportResult} of the users imported before the
+     *         error and {@link HttpStatus} BAD_REQUEST
+     */
+    @ExceptionHandler(UserImportAbortedException.class)
+    public ResponseEntity<UserImportResult> handleUserImportAbortedException(UserImportAbortedException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getResult());
     }
 
     /**
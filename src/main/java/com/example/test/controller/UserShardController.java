@@ -0,0 +1,204 @@
+package com.example.test.controller;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserShardStatus;
+import com.example.test.repository.RemoteUserRepository;
+import com.example.test.repository.UserQuery;
+import com.example.test.repository.UserRepository;
+import com.example.test.repository.UserVersionConflictException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Exposes the local {@link UserRepository} to a router in another process, which reaches it
+ * through {@link RemoteUserRepository}.
+ *
+ * <p>Enabled with {@code user.store.shard-endpoint.enabled}. The endpoints bypass validation and
+ * the response caches of the public API, so they must only be reachable by the router, e.g. by
+ * binding the shard to the loopback interface. Rejected writes are answered with
+ * {@link HttpStatus} BAD_REQUEST or PRECONDITION_FAILED so that the client can throw the same
+ * exceptions as the repository did.</p>
+ */
+@RestController
+@RequestMapping("/internal/shard")
+@ConditionalOnProperty(name = "user.store.shard-endpoint.enabled", havingValue = "true")
+public class UserShardController {
+
+    private final UserRepository userRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final long idStride;
+
+    private final long idOffset;
+
+    @Autowired
+    public UserShardController(UserRepository userRepository, ObjectMapper objectMapper, Environment env) {
+        this(userRepository, objectMapper,
+                env.getProperty("user.store.id-stride", Long.class, 1L),
+                env.getProperty("user.store.id-offset", Long.class, 0L));
+    }
+
+    public UserShardController(UserRepository userRepository, ObjectMapper objectMapper, long idStride, long idOffset) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.idStride = idStride;
+        this.idOffset = idOffset;
+    }
+
+    /**
+     * Reports the state of the store and the IDs it allocates.
+     *
+     * @return ResponseEntity with the {@link UserShardStatus} and {@link HttpStatus} OK
+     */
+    @GetMapping("/status")
+    public ResponseEntity<UserShardStatus> getStatus() {
+        return ResponseEntity.ok(new UserShardStatus(userRepository.indexesReady(), userRepository.count(),
+                userRepository.indexedCount(), userRepository.indexLookupCount(), userRepository.scanCount(),
+                userRepository.idLimit(), idStride, idOffset));
+    }
+
+    @GetMapping("/users")
+    public ResponseEntity<List<User>> findAll() {
+        return ResponseEntity.ok(userRepository.findAll());
+    }
+
+    @GetMapping("/users/page")
+    public ResponseEntity<List<User>> findPage(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        return ResponseEntity.ok(userRepository.findPage(after, limit));
+    }
+
+    @GetMapping("/users/stream")
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return ndjson(userRepository::stream);
+    }
+
+    @GetMapping("/users/{id}")
+    public ResponseEntity<User> findById(@PathVariable Long id) {
+        return ResponseEntity.of(userRepository.findById(id));
+    }
+
+    @PostMapping("/users/by-ids")
+    public ResponseEntity<List<User>> findAllById(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(userRepository.findAllById(ids));
+    }
+
+    @GetMapping("/users/by-email")
+    public ResponseEntity<User> findByEmail(@RequestParam String email) {
+        return ResponseEntity.of(userRepository.findByEmail(email));
+    }
+
+    @GetMapping("/users/birth-date")
+    public ResponseEntity<StreamingResponseBody> streamByBirthDate(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ndjson(() -> userRepository.streamByBirthDateAfterAndBirthDateBefore(from, to));
+    }
+
+    @GetMapping("/users/search")
+    public ResponseEntity<List<User>> search(@RequestParam String q, @RequestParam int limit) {
+        return ResponseEntity.ok(userRepository.search(q, limit));
+    }
+
+    @GetMapping("/users/query")
+    public ResponseEntity<List<User>> query(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornBefore,
+            @RequestParam(required = false) String emailDomain,
+            @RequestParam(required = false) String lastNamePrefix,
+            @RequestParam(required = false) Boolean hasPhoneNumber,
+            @RequestParam(required = false) Boolean hasAddress,
+            @RequestParam int limit) {
+        UserQuery query = new UserQuery(bornAfter, bornBefore, emailDomain, lastNamePrefix, hasPhoneNumber, hasAddress);
+        return ResponseEntity.ok(userRepository.query(query, limit));
+    }
+
+    @PostMapping("/users")
+    public ResponseEntity<User> save(@RequestBody User user) {
+        return ResponseEntity.ok(userRepository.save(user));
+    }
+
+    @PutMapping("/users/{id}")
+    public ResponseEntity<User> update(@PathVariable Long id, @RequestBody User user,
+                                       @RequestParam(required = false) Long expectedVersion) {
+        return ResponseEntity.ok(userRepository.update(id, user, expectedVersion));
+    }
+
+    /**
+     * Deletes a {@link User} by email.
+     *
+     * @param email The email of the {@link User} to delete
+     * @return ResponseEntity with the ID of the deleted user and {@link HttpStatus} OK,
+     * or {@link HttpStatus} NOT_FOUND if no user has the email
+     */
+    @DeleteMapping("/users/by-email")
+    public ResponseEntity<Long> deleteByEmail(@RequestParam String email) {
+        Optional<User> user = userRepository.findByEmail(email);
+        if (user.isEmpty() || !userRepository.deleteByEmail(email)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(user.get().getId());
+    }
+
+    @PostMapping("/durable")
+    public ResponseEntity<Void> awaitDurable() {
+        userRepository.awaitDurable();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Handles {@link UserVersionConflictException} thrown by conditional updates.
+     *
+     * @param ex The exception
+     * @return ResponseEntity with the versions involved and {@link HttpStatus} PRECONDITION_FAILED
+     */
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<Map<String, Long>> handleUserVersionConflictException(UserVersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("id", ex.getId(),
+                "expectedVersion", ex.getExpectedVersion(), "currentVersion", ex.getCurrentVersion()));
+    }
+
+    /**
+     * Handles {@link  IllegalArgumentException} thrown by the repository.
+     *
+     * @param ex The {@link  IllegalArgumentException}
+     * @return {@link  ResponseEntity} with the exception message and {@link HttpStatus} BAD_REQUEST
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(Supplier<Stream<User>> source) {
+        StreamingResponseBody body = outputStream -> {
+            ObjectWriter writer = objectMapper.writerFor(User.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (Stream<User> users = source.get()) {
+                Iterator<User> iterator = users.iterator();
+                while (iterator.hasNext()) {
+                    outputStream.write(writer.writeValueAsBytes(iterator.next()));
+                    outputStream.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
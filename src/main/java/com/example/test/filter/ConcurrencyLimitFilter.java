@@ -0,0 +1,138 @@
+package com.example.test.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for the user API.
+ *
+ * <p>At most {@code user.api.concurrency.max-in-flight} requests are processed at once. A request
+ * that cannot start within {@code user.api.concurrency.max-queue-wait-ms} is rejected with
+ * {@link HttpStatus#TOO_MANY_REQUESTS} and a {@code Retry-After} header instead of queuing behind
+ * work the service cannot finish in time. This matters most with
+ * {@code spring.threads.virtual.enabled=true}, where there is no thread pool left to bound concurrency.</p>
+ *
+ * <p>Asynchronous responses such as NDJSON streams hold their permit until they complete. Reads of
+ * the change feed are not limited: long polls and event streams spend most of their time parked
+ * without doing any work, and would otherwise take up permits for as long as clients stay connected.</p>
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/";
+    private static final String CHANGES_PATH = "/api/v1/users/changes";
+
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final long maxQueueWaitMs;
+    private final String retryAfterSeconds;
+    private final Counter rejected;
+
+    /**
+     * Constructs the filter from {@code user.api.concurrency.*} properties.
+     *
+     * @param env           The Environment object
+     * @param meterRegistry The registry to count rejected requests in, if metrics are enabled
+     */
+    public ConcurrencyLimitFilter(Environment env, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = env.getProperty("user.api.concurrency.enabled", Boolean.class, true);
+        this.permits = new Semaphore(env.getProperty("user.api.concurrency.max-in-flight", Integer.class, 200));
+        this.maxQueueWaitMs = env.getProperty("user.api.concurrency.max-queue-wait-ms", Long.class, 50L);
+        this.retryAfterSeconds = String.valueOf(env.getProperty("user.api.concurrency.retry-after-seconds", Integer.class, 1));
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.rejected = registry == null ? null : Counter.builder("user.api.rejected")
+                .description("Requests rejected by the concurrency limit")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled || !path.startsWith(PATH_PREFIX) || path.equals(CHANGES_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxQueueWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            if (rejected != null) {
+                rejected.increment();
+            }
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingAsyncListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests that can start without waiting.
+     *
+     * @return The number of free permits
+     */
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private record ReleasingAsyncListener(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
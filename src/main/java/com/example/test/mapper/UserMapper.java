@@ -2,14 +2,45 @@ package com.example.test.mapper;
 
 import com.example.test.model.User;
 import com.example.test.model.dto.UserDto;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
 /**
  * Mapper class for converting between {@link User} and {@link UserDto}.
+ *
+ * <p>It also reads {@link User} records directly from JSON and CSV streams, one record
+ * at a time, for imports that are too large to bind into {@link UserDto} lists.</p>
  */
 @Component
 public class UserMapper {
 
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructs a new UserMapper.
+     *
+     * @param objectMapper The ObjectMapper whose factory is used for streaming parsers
+     */
+    public UserMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
     /**
      * Converts a {@link UserDto} object to a {@link User} object.
      *
@@ -17,15 +48,8 @@ public class UserMapper {
      * @return The converted {@link User} object
      */
     public User toEntity(UserDto userDTO) {
-        User user = new User();
-        user.setId(userDTO.getId());
-        user.setEmail(userDTO.getEmail());
-        user.setFirstName(userDTO.getFirstName());
-        user.setLastName(userDTO.getLastName());
-        user.setBirthDate(userDTO.getBirthDate());
-        user.setAddress(userDTO.getAddress());
-        user.setPhoneNumber(userDTO.getPhoneNumber());
-        return user;
+        return new User(userDTO.getId(), userDTO.getEmail(), userDTO.getFirstName(), userDTO.getLastName(),
+                userDTO.getBirthDate(), userDTO.getAddress(), userDTO.getPhoneNumber());
     }
 
     /**
@@ -45,4 +69,237 @@ public class UserMapper {
         userDTO.setPhoneNumber(user.getPhoneNumber());
         return userDTO;
     }
+
+    /**
+     * Reads a single JSON object into a {@link User}, starting at its {@code START_OBJECT} token.
+     *
+     * <p>The whole object is always consumed, so the parser is positioned on its
+     * {@code END_OBJECT} token even if a field value is invalid.</p>
+     *
+     * @param parser The parser positioned on the object's {@code START_OBJECT} token
+     * @return The read {@link User}
+     * @throws IOException              if the input is not well-formed JSON
+     * @throws IllegalArgumentException if a field has an invalid value
+     */
+    public User toEntity(JsonParser parser) throws IOException {
+        User user = new User();
+        String error = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            String value = token.isScalarValue() ? parser.getValueAsString() : null;
+            parser.skipChildren();
+            try {
+                user = withField(user, field, value);
+            } catch (IllegalArgumentException e) {
+                if (error == null) {
+                    error = e.getMessage();
+                }
+            }
+        }
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        return user;
+    }
+
+    /**
+     * Lazily reads users from a JSON array or from newline-delimited JSON objects.
+     *
+     * <p>Only the record being returned is held in memory. A record with an invalid field value
+     * makes {@link Iterator#next()} throw {@link IllegalArgumentException} after the record has been
+     * consumed, so iteration can continue; malformed JSON throws {@link UncheckedIOException}.
+     * Closing the iterator closes the parser, but not the input.</p>
+     *
+     * @param in The JSON input
+     * @return Iterator over the users in the input
+     * @throws IOException if no parser can be created for the input
+     */
+    public JsonRecords readJsonRecords(InputStream in) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(in);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+        return new JsonRecords() {
+            private JsonToken current;
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    started = true;
+                    advance();
+                    if (current == JsonToken.START_ARRAY) {
+                        advance();
+                    }
+                }
+                if (current == null || current == JsonToken.END_ARRAY) {
+                    return false;
+                }
+                if (current != JsonToken.START_OBJECT) {
+                    throw new UncheckedIOException(new IOException(
+                            "Expected a JSON object at " + parser.currentLocation().offsetDescription()));
+                }
+                return true;
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return toEntity(parser);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    advance();
+                }
+            }
+
+            private void advance() {
+                try {
+                    current = parser.nextToken();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                parser.close();
+            }
+        };
+    }
+
+    /**
+     * Lazily reads users from CSV with a header row naming the {@link User} fields.
+     *
+     * <p>Columns may appear in any order and unknown columns are ignored. Values may be quoted,
+     * with doubled quotes as escapes. A row with an invalid value makes {@link Iterator#next()}
+     * throw {@link IllegalArgumentException}; iteration can continue with the next row.</p>
+     *
+     * @param reader The CSV input
+     * @return Iterator over the users in the input
+     * @throws IOException if the header cannot be read
+     */
+    public Iterator<User> readCsvRecords(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        String headerLine = lines.readLine();
+        List<String> header = headerLine == null ? List.of() : splitCsvLine(headerLine);
+        String[] columns = header.stream().map(column -> column.trim().toLowerCase(Locale.ROOT)).toArray(String[]::new);
+
+        return new Iterator<>() {
+            private long lineNumber = 1;
+            private String nextLine = readNonBlankLine();
+
+            @Override
+            public boolean hasNext() {
+                return nextLine != null;
+            }
+
+            @Override
+            public User next() {
+                if (nextLine == null) {
+                    throw new NoSuchElementException();
+                }
+                String line = nextLine;
+                long currentLine = lineNumber;
+                nextLine = readNonBlankLine();
+
+                List<String> values = splitCsvLine(line);
+                User user = new User();
+                try {
+                    for (int i = 0; i < columns.length && i < values.size(); i++) {
+                        String value = values.get(i);
+                        user = withField(user, columns[i], value.isEmpty() ? null : value);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + currentLine + ": " + e.getMessage());
+                }
+                return user;
+            }
+
+            private String readNonBlankLine() {
+                try {
+                    String line;
+                    do {
+                        line = lines.readLine();
+                        lineNumber++;
+                    } while (line != null && line.isBlank());
+                    return line;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private static User withField(User user, String field, String value) {
+        return switch (field.toLowerCase(Locale.ROOT)) {
+            case "id" -> user.withId(parseId(value));
+            case "email" -> user.withEmail(value);
+            case "firstname" -> user.withFirstName(value);
+            case "lastname" -> user.withLastName(value);
+            case "birthdate" -> user.withBirthDate(parseBirthDate(value));
+            case "address" -> user.withAddress(value);
+            case "phonenumber" -> user.withPhoneNumber(value);
+            default -> user;
+        };
+    }
+
+    private static Long parseId(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid id: " + value);
+        }
+    }
+
+    private static LocalDate parseBirthDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid birth date: " + value);
+        }
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Users read lazily from a JSON stream, holding its parser until closed.
+     */
+    public interface JsonRecords extends Iterator<User>, Closeable {
+    }
 }
@@ -0,0 +1,29 @@
+package com.example.test.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for service and repository operations slower than
+ * {@code user.metrics.slow-operation-ms}.
+ *
+ * <p>The event costs next to nothing while no recording is running, so it can stay enabled in
+ * production. A recording is started on a live process with {@code jcmd <pid> JFR.start}.</p>
+ */
+@Name("com.example.test.SlowUserOperation")
+@Label("Slow User Operation")
+@Category({"Application", "Users"})
+@Description("A user service or repository operation that exceeded the threshold")
+class SlowUserOperationEvent extends jdk.jfr.Event {
+
+    @Label("Layer")
+    String layer;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,125 @@
+package com.example.test.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every {@code UserService} and {@code UserRepository} operation.
+ *
+ * <p>Each operation gets a {@value #TIMER_NAME} timer tagged with its layer, operation name and
+ * outcome, published with a percentile histogram so that latency quantiles can be aggregated
+ * across instances. Operations slower than {@code user.metrics.slow-operation-ms} are also
+ * recorded as {@link SlowUserOperationEvent}s.</p>
+ *
+ * <p>Operations that return a {@link CompletionStage}, such as {@code pollChanges} and the
+ * {@code *Async} writes, are timed until the stage completes, and their outcome is taken from
+ * it.</p>
+ */
+@Aspect
+@Component
+public class UserOperationMetricsAspect {
+
+    static final String TIMER_NAME = "user.operation";
+
+    private final MeterRegistry meterRegistry;
+    private final long slowOperationNanos;
+    private final Map<String, Map<String, Timers>> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the aspect.
+     *
+     * @param meterRegistry The registry to publish timers to
+     * @param env           The Environment object
+     */
+    public UserOperationMetricsAspect(MeterRegistry meterRegistry, Environment env) {
+        this.meterRegistry = meterRegistry;
+        this.slowOperationNanos = TimeUnit.MILLISECONDS.toNanos(
+                env.getProperty("user.metrics.slow-operation-ms", Long.class, 100L));
+    }
+
+    @Around("execution(public * com.example.test.service.UserService+.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("service", joinPoint);
+    }
+
+    /**
+     * Times repository operations, leaving out the cheap status getters polled by gauges.
+     */
+    @Around("execution(public * com.example.test.repository.UserRepository.*(..))"
+            + " && !execution(* com.example.test.repository.UserRepository.count())"
+            + " && !execution(* com.example.test.repository.UserRepository.idLimit())"
+            + " && !execution(* com.example.test.repository.UserRepository.index*(..))"
+            + " && !execution(* com.example.test.repository.UserRepository.scanCount())"
+            + " && !execution(* com.example.test.repository.UserRepository.version())")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("repository", joinPoint);
+    }
+
+    private Object time(String layer, ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        SlowUserOperationEvent event = new SlowUserOperationEvent();
+        event.begin();
+        long started = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            record(layer, operation, false, started, event);
+            throw e;
+        }
+        if (result instanceof CompletionStage<?> stage) {
+            stage.whenComplete((value, failure) -> record(layer, operation, failure == null, started, event));
+        } else {
+            record(layer, operation, true, started, event);
+        }
+        return result;
+    }
+
+    private void record(String layer, String operation, boolean success, long started, SlowUserOperationEvent event) {
+        long elapsed = System.nanoTime() - started;
+        Timers operationTimers = timers.computeIfAbsent(layer, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(operation, key -> new Timers(layer, operation));
+        (success ? operationTimers.success : operationTimers.error).record(elapsed, TimeUnit.NANOSECONDS);
+        event.end();
+        if (elapsed >= slowOperationNanos && event.shouldCommit()) {
+            event.layer = layer;
+            event.operation = operation;
+            event.outcome = success ? "success" : "error";
+            event.commit();
+        }
+    }
+
+    private Timer timer(String layer, String operation, String outcome) {
+        return Timer.builder(TIMER_NAME)
+                .description("Latency of user service and repository operations")
+                .tag("layer", layer)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * The timers of one operation, registered when it is first called.
+     */
+    private final class Timers {
+
+        final Timer success;
+        final Timer error;
+
+        Timers(String layer, String operation) {
+            this.success = timer(layer, operation, "success");
+            this.error = timer(layer, operation, "error");
+        }
+    }
+}
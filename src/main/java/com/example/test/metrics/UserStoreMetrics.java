@@ -0,0 +1,51 @@
+package com.example.test.metrics;
+
+import com.example.test.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the size of the user store, its index build progress and how often lookups
+ * were answered from an index versus a scan of the store.
+ */
+@Component
+public class UserStoreMetrics implements MeterBinder {
+
+    private final UserRepository userRepository;
+
+    /**
+     * Constructs the binder.
+     *
+     * @param userRepository The repository to observe
+     */
+    public UserStoreMetrics(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.store.size", userRepository, UserRepository::count)
+                .description("Number of stored users")
+                .register(registry);
+        Gauge.builder("user.store.indexed", userRepository, UserRepository::indexedCount)
+                .description("Number of stored users covered by the startup index build")
+                .register(registry);
+        Gauge.builder("user.store.indexes.ready", userRepository, repository -> repository.indexesReady() ? 1 : 0)
+                .description("1 once the secondary indexes cover every stored user")
+                .register(registry);
+        Gauge.builder("user.store.ids.limit", userRepository, UserRepository::idLimit)
+                .description("ID high-water mark; every allocated user ID is below it")
+                .register(registry);
+        FunctionCounter.builder("user.store.lookups", userRepository, UserRepository::indexLookupCount)
+                .description("Lookups answered from a secondary index or by scanning the store")
+                .tag("source", "index")
+                .register(registry);
+        FunctionCounter.builder("user.store.lookups", userRepository, UserRepository::scanCount)
+                .description("Lookups answered from a secondary index or by scanning the store")
+                .tag("source", "scan")
+                .register(registry);
+    }
+}
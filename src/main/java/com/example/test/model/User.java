@@ -3,23 +3,36 @@ package com.example.test.model;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
+import lombok.With;
 
 import java.time.LocalDate;
 
 /**
  * Class to represent a user
+ *
+ * <p>Instances are immutable. An update replaces the stored instance with a changed copy that
+ * carries the next {@link #version}, so readers never see a partially updated user. A user with
+ * only some fields set serves as the patch of a partial update.</p>
  */
 @Getter
-@Setter
+@With
 @AllArgsConstructor
-@NoArgsConstructor
+@NoArgsConstructor(force = true)
 public class User {
-    private Long id;
-    private String email;
-    private String firstName;
-    private String lastName;
-    private LocalDate birthDate;
-    private String address;
-    private String phoneNumber;
+    private final Long id;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final LocalDate birthDate;
+    private final String address;
+    private final String phoneNumber;
+    private final long version;
+
+    /**
+     * Constructs a user at its initial version.
+     */
+    public User(Long id, String email, String firstName, String lastName, LocalDate birthDate,
+                String address, String phoneNumber) {
+        this(id, email, firstName, lastName, birthDate, address, phoneNumber, 0L);
+    }
 }
@@ -0,0 +1,31 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A single create, update or delete request inside a batch.
+ *
+ * <p>{@code CREATE} uses {@link #user}, {@code UPDATE} uses {@link #id} and {@link #user},
+ * and {@code DELETE} uses {@link #email}.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBatchOperation {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    private Type op;
+
+    private Long id;
+
+    private String email;
+
+    private UserDto user;
+}
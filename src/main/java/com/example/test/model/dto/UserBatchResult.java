@@ -0,0 +1,32 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outcome of a single {@link UserBatchOperation}, reported at the same index as the operation.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBatchResult {
+
+    public enum Status {
+        CREATED, UPDATED, DELETED, FAILED
+    }
+
+    private int index;
+
+    private Status status;
+
+    private Long id;
+
+    private String error;
+
+    public static UserBatchResult failed(int index, String error) {
+        return new UserBatchResult(index, Status.FAILED, null, error);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.test.model.dto;
+
+import com.example.test.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A single write to the user store, as published on the change feed.
+ *
+ * <p>Sequences increase by one with every change. Changes to the same user are published in the
+ * order they were applied, so replaying them as upserts and deletes by ID reproduces the store.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private long sequence;
+
+    private Type type;
+
+    private long id;
+
+    /**
+     * The user as written, or null for {@link Type#DELETED}.
+     */
+    private User user;
+}
@@ -0,0 +1,26 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Consecutive changes read from the change feed.
+ *
+ * <p>{@code lastSequence} is the cursor to pass as {@code since} to read the following changes.
+ * It equals the sequence of the last change in the batch, or the requested cursor if no change
+ * arrived in time.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserChangeBatch {
+
+    private List<UserChange> changes;
+
+    private long lastSequence;
+}
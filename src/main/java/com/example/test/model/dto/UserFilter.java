@@ -0,0 +1,30 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Combination of optional filters for a user query. Filters that are not set place no restriction.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserFilter {
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    private String emailDomain;
+
+    private String lastNamePrefix;
+
+    private Boolean hasPhoneNumber;
+
+    private Boolean hasAddress;
+
+    private Integer limit;
+}
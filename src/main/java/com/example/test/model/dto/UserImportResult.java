@@ -0,0 +1,27 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Summary of a streaming user import.
+ *
+ * <p>Only the first few error messages are kept so that the summary stays small
+ * regardless of how many records were rejected.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportResult {
+
+    private long imported;
+
+    private long failed;
+
+    private List<String> errors;
+}
@@ -0,0 +1,36 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * State of a user store serving as a shard, as reported to the router that owns it.
+ *
+ * <p>{@code idStride} and {@code idOffset} describe which IDs the shard allocates: those congruent
+ * to {@code idOffset} modulo {@code idStride}. They must match the position of the shard in the
+ * router's shard list.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserShardStatus {
+
+    private boolean indexesReady;
+
+    private int users;
+
+    private long indexedUsers;
+
+    private long indexLookups;
+
+    private long scans;
+
+    private long idLimit;
+
+    private long idStride;
+
+    private long idOffset;
+}
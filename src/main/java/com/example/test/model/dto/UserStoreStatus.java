@@ -0,0 +1,25 @@
+package com.example.test.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Readiness of the user store, reported while its secondary indexes are built after startup.
+ *
+ * <p>The store serves requests before the indexes are ready, but indexed queries fall back to
+ * scanning until {@code indexesReady} is true.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserStoreStatus {
+
+    private boolean indexesReady;
+
+    private long users;
+
+    private long indexedUsers;
+}
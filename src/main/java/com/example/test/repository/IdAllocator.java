@@ -0,0 +1,116 @@
+package com.example.test.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Hands out user IDs from blocks reserved on a shared counter.
+ *
+ * <p>Threads are spread over a fixed set of blocks by thread ID, and each block hands out
+ * consecutive IDs under its own monitor, so the shared counter is touched once per
+ * {@code blockSize} IDs per block rather than once per ID. IDs increase within a block and stay
+ * dense: at most one partly used block per stripe is lost on restart.</p>
+ *
+ * <p>Reserved ranges are covered by a durable high-water mark. The mark is persisted through
+ * {@code persistLimit} in leases of many blocks before any ID at or above the previous mark is
+ * handed out, so IDs are never reused after a crash.</p>
+ */
+final class IdAllocator {
+
+    private final int blockSize;
+    private final long leaseSize;
+    private final LongConsumer persistLimit;
+    private final AtomicLong nextUnreserved = new AtomicLong(1);
+    private final Block[] blocks;
+    private final Object leaseLock = new Object();
+    private volatile long leasedLimit = 1;
+
+    /**
+     * Creates the allocator, handing out IDs from 1.
+     *
+     * @param stripes      The minimum number of blocks in use at once, rounded up to a power of two
+     * @param blockSize    The number of IDs reserved at once for a block
+     * @param leaseSize    The minimum number of IDs covered by each persisted high-water mark
+     * @param persistLimit Durably records a new high-water mark; IDs below it may have been handed out
+     */
+    IdAllocator(int stripes, int blockSize, long leaseSize, LongConsumer persistLimit) {
+        this.blockSize = blockSize;
+        this.leaseSize = leaseSize;
+        this.persistLimit = persistLimit;
+        this.blocks = new Block[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new Block();
+        }
+    }
+
+    /**
+     * Returns a new ID.
+     *
+     * @return An ID that has not been handed out before
+     */
+    long nextId() {
+        long thread = Thread.currentThread().getId();
+        Block block = blocks[(int) (thread ^ (thread >>> 16)) & (blocks.length - 1)];
+        synchronized (block) {
+            if (block.next == block.end) {
+                long first = nextUnreserved.getAndAdd(blockSize);
+                ensureLeased(first + blockSize);
+                block.next = first;
+                block.end = first + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Makes sure that blocks reserved from now on start at or above the given ID, e.g. because
+     * users with lower IDs have been recovered or imported.
+     *
+     * @param firstFree The lowest ID that may be reserved
+     */
+    void advance(long firstFree) {
+        long current;
+        while ((current = nextUnreserved.get()) < firstFree && !nextUnreserved.compareAndSet(current, firstFree)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Starts from a persisted high-water mark, without persisting it again.
+     *
+     * @param limit The persisted mark
+     */
+    void recoverLimit(long limit) {
+        advance(limit);
+        synchronized (leaseLock) {
+            leasedLimit = Math.max(leasedLimit, limit);
+        }
+    }
+
+    /**
+     * Returns the current high-water mark: every ID handed out so far is below it.
+     *
+     * @return The mark
+     */
+    long limit() {
+        return leasedLimit;
+    }
+
+    private void ensureLeased(long end) {
+        if (end <= leasedLimit) {
+            return;
+        }
+        synchronized (leaseLock) {
+            if (end > leasedLimit) {
+                long limit = Math.max(end, leasedLimit + leaseSize);
+                persistLimit.accept(limit);
+                leasedLimit = limit;
+            }
+        }
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+}
@@ -0,0 +1,890 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.repository.index.BirthDateColumn;
+import com.example.test.repository.index.BirthDateIndex;
+import com.example.test.repository.index.EmailDomainIndex;
+import com.example.test.repository.index.EmailIndex;
+import com.example.test.repository.index.IdOrderIndex;
+import com.example.test.repository.index.LastNameIndex;
+import com.example.test.repository.index.SearchIndex;
+import com.example.test.repository.index.UserIndex;
+import com.example.test.repository.storage.HeapUserRecordStore;
+import com.example.test.repository.storage.UserRecordStore;
+import com.example.test.repository.storage.UserStorePersistence;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link UserRepository} that keeps users in this process.
+ *
+ * <p>Users are kept in a primary {@link UserRecordStore} keyed by id, with a unique
+ * secondary index on email, a sorted birth date index keyed by epoch day and a primitive
+ * birth date column for ranges too wide for the sorted index to pay off. Ids are
+ * additionally kept in ascending order to support keyset pagination. Reads go straight
+ * to the concurrent structures without locking. Writes lock the {@link StripedLocks stripes}
+ * of the IDs and emails they touch, so that writes to the same user or email are serialized and
+ * all indexes always point at the same set of users, while writes to unrelated users run in
+ * parallel. Stored users are immutable and versioned; an update swaps in a new version, so
+ * readers always see a complete user.</p>
+ *
+ * <p>When a {@link UserStorePersistence} is configured, every write is journaled while its
+ * stripes are held, so the journal orders the writes of each user, and the store is recovered
+ * from disk on startup.</p>
+ *
+ * <p>Secondary indexes for users that are already in the store at startup can be built in the
+ * background, so the application serves traffic as soon as the records are loaded. Until
+ * {@link #indexesReady()} reports true, lookups that miss an index fall back to scanning the store.</p>
+ */
+@Slf4j
+public class LocalUserRepository implements UserRepository {
+
+    private static final int INDEX_BUILD_BATCH = 1024;
+    private static final int SCAN_SELECTIVITY_DIVISOR = 4;
+    private static final int WRITE_STRIPES_PER_CORE = 8;
+    private static final int ID_BLOCK_SIZE = 64;
+    private static final long ID_LEASE_SIZE = 1 << 16;
+    private static final long MAX_EXPLICIT_ID_GAP = 1L << 32;
+
+    private final UserRecordStore records;
+    private final EmailIndex emailIndex = new EmailIndex();
+    private final BirthDateIndex birthDateIndex = new BirthDateIndex();
+    private final BirthDateColumn birthDateColumn = new BirthDateColumn();
+    private final IdOrderIndex idOrderIndex = new IdOrderIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final EmailDomainIndex emailDomainIndex = new EmailDomainIndex();
+    private final LastNameIndex lastNameIndex = new LastNameIndex();
+    private final List<UserIndex> indexes = List.of(emailIndex, birthDateIndex, idOrderIndex, searchIndex,
+            emailDomainIndex, lastNameIndex, birthDateColumn);
+    private final StripedLocks writeLocks = new StripedLocks(WRITE_STRIPES_PER_CORE * Runtime.getRuntime().availableProcessors());
+    private final UserStorePersistence persistence;
+    private final IdAllocator ids;
+    private final long idStride;
+    private final long idOffset;
+    private final boolean backgroundIndexBuild;
+
+    private volatile boolean indexesReady;
+    private final AtomicLong indexedRecords = new AtomicLong();
+    private final LongAdder indexLookups = new LongAdder();
+    private final LongAdder scans = new LongAdder();
+    private final AtomicLong version = new AtomicLong();
+    private final List<UserWriteListener> writeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs an in-memory repository without persistence.
+     */
+    public LocalUserRepository() {
+        this(new HeapUserRecordStore(), (UserStorePersistence) null);
+    }
+
+    /**
+     * Constructs a heap-backed repository that journals writes to the given persistence, if any.
+     *
+     * @param persistence The persistence to journal to, or null for a purely in-memory store
+     */
+    public LocalUserRepository(UserStorePersistence persistence) {
+        this(new HeapUserRecordStore(), persistence);
+    }
+
+    /**
+     * Constructs a repository on top of the given record store that builds its indexes on startup.
+     *
+     * @param store       The primary store of user records
+     * @param persistence The persistence to journal to, or null if the store needs no journal
+     */
+    public LocalUserRepository(UserRecordStore store, UserStorePersistence persistence) {
+        this(store, persistence, false);
+    }
+
+    /**
+     * Constructs a repository on top of the given record store.
+     *
+     * @param store                The primary store of user records
+     * @param persistence          The persistence to journal to, or null if the store needs no journal
+     * @param backgroundIndexBuild Whether indexes for existing records are built after startup completes
+     */
+    public LocalUserRepository(UserRecordStore store, UserStorePersistence persistence, boolean backgroundIndexBuild) {
+        this(store, persistence, backgroundIndexBuild, 1, 0);
+    }
+
+    /**
+     * Constructs a repository that allocates only the IDs congruent to {@code idOffset} modulo
+     * {@code idStride}, so that it can serve as one shard of a {@link ShardedUserRepository}.
+     *
+     * @param store                The primary store of user records
+     * @param persistence          The persistence to journal to, or null if the store needs no journal
+     * @param backgroundIndexBuild Whether indexes for existing records are built after startup completes
+     * @param idStride             The distance between two allocated IDs, i.e. the number of shards
+     * @param idOffset             The remainder of every allocated ID modulo {@code idStride}, i.e. the shard index
+     * @throws IllegalArgumentException if the stride is not positive or the offset is not below it
+     */
+    public LocalUserRepository(UserRecordStore store, UserStorePersistence persistence, boolean backgroundIndexBuild,
+                               long idStride, long idOffset) {
+        if (idStride < 1 || idOffset < 0 || idOffset >= idStride) {
+            throw new IllegalArgumentException("ID offset must be between 0 and the ID stride " + idStride);
+        }
+        this.idStride = idStride;
+        this.idOffset = idOffset;
+        this.records = store;
+        this.persistence = persistence;
+        this.ids = new IdAllocator(Runtime.getRuntime().availableProcessors(), ID_BLOCK_SIZE, ID_LEASE_SIZE,
+                persistence == null ? limit -> { } : persistence::writeIdLimit);
+        this.backgroundIndexBuild = backgroundIndexBuild;
+        this.indexesReady = persistence == null && store.size() == 0;
+    }
+
+    /**
+     * Recovers persisted users, starts periodic snapshots when persistence is configured and
+     * builds the secondary indexes for the recovered records.
+     *
+     * @throws IOException if the persisted state cannot be read
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        if (persistence != null) {
+            writeLocks.lockAll();
+            try {
+                ids.recoverLimit(persistence.readIdLimit());
+                persistence.recover(user -> {
+                    records.put(user);
+                    reserveIdsUpTo(user.getId());
+                }, this::restore, this::evict);
+            } finally {
+                writeLocks.unlockAll();
+            }
+            persistence.startSnapshots(task -> executeInBatch(() -> {
+                task.run();
+                return null;
+            }), () -> records.stream().iterator());
+        }
+
+        if (records.size() == 0) {
+            indexesReady = true;
+        } else if (backgroundIndexBuild) {
+            Thread builder = new Thread(this::buildIndexes, "user-index-builder");
+            builder.setDaemon(true);
+            builder.start();
+        } else {
+            buildIndexes();
+        }
+    }
+
+    /**
+     * Reports whether the secondary indexes cover every stored user.
+     *
+     * @return True once the startup index build has finished
+     */
+    @Override
+    public boolean indexesReady() {
+        return indexesReady;
+    }
+
+    /**
+     * Returns the number of stored users the startup index build has processed so far.
+     *
+     * @return The number of indexed users
+     */
+    @Override
+    public long indexedCount() {
+        return indexedRecords.get();
+    }
+
+    /**
+     * Returns the number of lookups answered from a secondary index.
+     *
+     * @return The number of index lookups since startup
+     */
+    @Override
+    public long indexLookupCount() {
+        return indexLookups.sum();
+    }
+
+    /**
+     * Returns the number of lookups that scanned the store because the indexes were not ready.
+     *
+     * @return The number of scans since startup
+     */
+    @Override
+    public long scanCount() {
+        return scans.sum();
+    }
+
+    /**
+     * Returns a number that changes whenever a user is saved, updated or deleted.
+     *
+     * <p>The version is advanced after the write is visible, so a result computed after reading
+     * a version reflects at least every write up to that version.</p>
+     *
+     * @return The current data version
+     */
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Registers a listener that is called with every saved, updated or deleted user.
+     *
+     * <p>Listeners run on the writing thread after the write and the {@link #version()} advance
+     * are visible, while the user's write stripes are held, so they must be fast and must not
+     * write users.</p>
+     *
+     * @param listener Receives each written user
+     */
+    @Override
+    public void addWriteListener(UserWriteListener listener) {
+        writeListeners.add(listener);
+    }
+
+    /**
+     * Retrieves all users.
+     *
+     * @return List of all users, in ascending ID order
+     */
+    @Override
+    public List<User> findAll() {
+        List<User> users = records.stream().collect(Collectors.toCollection(ArrayList::new));
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    /**
+     * Retrieves a page of users ordered by ID.
+     *
+     * @param afterId The ID to continue after, or null to start from the beginning
+     * @param limit   The maximum number of users to return
+     * @return List of at most {@code limit} users with IDs greater than {@code afterId}
+     */
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        if (!indexesReady) {
+            scans.increment();
+            return records.stream()
+                    .filter(user -> afterId == null || user.getId() > afterId)
+                    .sorted(Comparator.comparing(User::getId))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+        indexLookups.increment();
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Long id : idOrderIndex.idsAfter(afterId)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            User user = records.get(id);
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Streams all users without copying the store.
+     *
+     * <p>The stream is weakly consistent: it never throws on concurrent writes and
+     * may or may not reflect writes made while it is being consumed.</p>
+     *
+     * @return Stream of all users
+     */
+    @Override
+    public Stream<User> stream() {
+        return records.stream();
+    }
+
+    /**
+     * Finds a {@link User} by ID.
+     *
+     * @param id The ID of the {@link User} to find
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    @Override
+    public Optional<User> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(records.get(id));
+    }
+
+    /**
+     * Finds the users with the given IDs in one pass over the ID index.
+     *
+     * @param ids The IDs to look up
+     * @return List of the users found, in the order of {@code ids}; unknown IDs are skipped
+     */
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = id == null ? null : records.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds a {@link User} by email using the unique email index.
+     *
+     * @param email The email of the {@link User} to find
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Long id = findIdByEmail(email);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    /**
+     * Checks if a {@link User} exists by ID.
+     *
+     * @param id The ID of the {@link User} to check
+     * @return True if the {@link User} exists, otherwise false
+     */
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && records.contains(id);
+    }
+
+    /**
+     * Finds users born strictly between two dates.
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return List of users whose birth date lies inside the range
+     */
+    @Override
+    public List<User> findByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate) {
+        return streamByBirthDateAfterAndBirthDateBefore(fromDate, toDate).collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily streams users born strictly between two dates, in birth date order once the
+     * indexes are ready.
+     *
+     * <p>Users are looked up only as the stream is consumed, so a slow consumer never causes
+     * the whole range to be materialized. The stream is weakly consistent like {@link #stream()}.</p>
+     *
+     * <p>Narrow ranges are read from the sorted birth date index. When the range covers at least a
+     * quarter of the store, walking the index costs more than comparing every birth date, so the
+     * matching IDs are taken from a parallel scan of the {@link BirthDateColumn} instead.</p>
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return Stream of users whose birth date lies inside the range
+     */
+    @Override
+    public Stream<User> streamByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate) {
+        if (!indexesReady) {
+            scans.increment();
+            return records.stream().filter(user -> bornBetween(user, fromDate, toDate));
+        }
+        indexLookups.increment();
+        Collection<Set<Long>> ids = birthDateIndex.idsBetween(fromDate, toDate);
+        long cutoff = records.size() / SCAN_SELECTIVITY_DIVISOR + 1L;
+        // Users are read as the stream is consumed, so the range is checked again against the
+        // version read: the user may have been updated since the index was looked up.
+        if (estimate(ids, cutoff) < cutoff) {
+            return ids.stream()
+                    .flatMap(Set::stream)
+                    .map(records::get)
+                    .filter(user -> user != null && bornBetween(user, fromDate, toDate));
+        }
+        return Arrays.stream(birthDateColumn.idsBetween(fromDate, toDate))
+                .mapToObj(records::get)
+                .filter(user -> user != null && bornBetween(user, fromDate, toDate));
+    }
+
+    /**
+     * Searches first name, last name, email and address for users matching every token of a query
+     * by prefix, see {@link SearchIndex}.
+     *
+     * @param query The search text
+     * @param limit The maximum number of users to return
+     * @return The best matching users, best match first, ties broken by ascending ID
+     */
+    @Override
+    public List<User> search(String query, int limit) {
+        List<String> tokens = SearchIndex.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        Comparator<Map.Entry<User, Integer>> ranking = Map.Entry.<User, Integer>comparingByValue()
+                .thenComparing(entry -> entry.getKey().getId(), Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<User, Integer>> top = new PriorityQueue<>(limit + 1, ranking);
+        Stream<User> candidates;
+        if (indexesReady) {
+            indexLookups.increment();
+            candidates = searchIndex.candidates(tokens).stream().map(records::get).filter(Objects::nonNull);
+        } else {
+            scans.increment();
+            candidates = records.stream();
+        }
+        candidates.forEach(user -> {
+            int score = SearchIndex.score(user, tokens);
+            if (score > 0) {
+                top.add(Map.entry(user, score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        });
+        List<User> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Finds users matching every predicate of a {@link UserQuery}.
+     *
+     * <p>The planner estimates how many candidates each applicable index (birth date, email
+     * domain, last name prefix) would yield, stopping early once an index is worse than the best
+     * so far, and reads the candidates of the most selective one. The remaining predicates are
+     * evaluated on those candidates. If no index applies, the best one would still yield more
+     * than a quarter of the store, or the indexes are not ready yet, the store is scanned in
+     * parallel on the common fork-join pool instead.</p>
+     *
+     * @param query The predicates to apply
+     * @param limit The maximum number of users to return
+     * @return The matching users with the lowest IDs, in ascending ID order
+     */
+    @Override
+    public List<User> query(UserQuery query, int limit) {
+        String plan = "scan";
+        Collection<Set<Long>> candidates = null;
+        if (indexesReady) {
+            long best = records.size() / SCAN_SELECTIVITY_DIVISOR + 1L;
+            if (query.getBornAfter() != null || query.getBornBefore() != null) {
+                Collection<Set<Long>> ids = birthDateIndex.idsBetween(
+                        query.getBornAfter() == null ? LocalDate.MIN : query.getBornAfter(),
+                        query.getBornBefore() == null ? LocalDate.MAX : query.getBornBefore());
+                long estimate = estimate(ids, best);
+                if (estimate < best) {
+                    plan = "birthDate";
+                    candidates = ids;
+                    best = estimate;
+                }
+            }
+            if (query.getEmailDomain() != null) {
+                Collection<Set<Long>> ids = emailDomainIndex.idsWithDomain(query.getEmailDomain());
+                long estimate = estimate(ids, best);
+                if (estimate < best) {
+                    plan = "emailDomain";
+                    candidates = ids;
+                    best = estimate;
+                }
+            }
+            if (query.getLastNamePrefix() != null) {
+                Collection<Set<Long>> ids = lastNameIndex.idsWithPrefix(query.getLastNamePrefix());
+                long estimate = estimate(ids, best);
+                if (estimate < best) {
+                    plan = "lastName";
+                    candidates = ids;
+                }
+            }
+        }
+        log.debug("Running user query with plan {}", plan);
+
+        Stream<User> users;
+        if (candidates == null) {
+            scans.increment();
+            users = records.stream().parallel();
+        } else {
+            indexLookups.increment();
+            users = candidates.stream().flatMap(Set::stream).map(records::get).filter(Objects::nonNull);
+        }
+        return users.filter(query::matches)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Saves a {@link User}, assigning it a new ID if it has none.
+     *
+     * <p>New IDs come from an {@link IdAllocator}, so concurrent saves do not contend on a shared
+     * counter. A user saved with an explicit ID keeps it, and later IDs are allocated above it.
+     * Explicit IDs more than {@value #MAX_EXPLICIT_ID_GAP} above {@link #idLimit()} are rejected,
+     * since the allocator could never move back below them.</p>
+     *
+     * @param user The {@link User} to save
+     * @return The saved {@link User}, carrying its ID
+     * @throws IllegalArgumentException if the ID or email is already taken, or the ID is too large
+     */
+    @Override
+    public User save(User user) {
+        Objects.requireNonNull(user, "User must not be null");
+        if (user.getId() != null) {
+            long maxId = idLimit() + MAX_EXPLICIT_ID_GAP;
+            if (user.getId() > maxId) {
+                throw new IllegalArgumentException("User ID must not be greater than " + maxId);
+            }
+            reserveIdsUpTo(user.getId());
+            return insert(user);
+        }
+        while (true) {
+            long id = ids.nextId() * idStride + idOffset;
+            // An ID may already be held by a user imported with an explicit ID below the allocator's blocks.
+            if (!records.contains(id)) {
+                return insert(user.withId(id));
+            }
+        }
+    }
+
+    /**
+     * Returns the ID high-water mark: every ID allocated by {@link #save} so far is below it.
+     *
+     * @return The mark
+     */
+    @Override
+    public long idLimit() {
+        return ids.limit() * idStride;
+    }
+
+    private User insert(User user) {
+        long sequence;
+        try (StripedLocks.Held ignored = writeLocks.lock(writeLocks.stripeOf(user.getId()), writeLocks.stripeOf(user.getEmail()))) {
+            if (records.contains(user.getId())) {
+                throw new IllegalArgumentException("User with id: " + user.getId() + " already exists");
+            }
+            if (user.getEmail() != null && findIdByEmail(user.getEmail()) != null) {
+                throw new IllegalArgumentException("User with email: " + user.getEmail() + " already exists");
+            }
+            sequence = journalPut(user);
+            records.put(user);
+            index(user);
+            written(user.getId(), user);
+        }
+        awaitCommit(sequence);
+        return user;
+    }
+
+    /**
+     * Deletes a {@link User} by email.
+     *
+     * @param email The email of the {@link User} to delete
+     * @return True if the {@link User} was deleted, otherwise false
+     */
+    @Override
+    public boolean deleteByEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        while (true) {
+            Long id = findIdByEmail(email);
+            if (id == null) {
+                return false;
+            }
+            long sequence;
+            try (StripedLocks.Held ignored = writeLocks.lock(writeLocks.stripeOf(id), writeLocks.stripeOf(email))) {
+                User current = records.get(id);
+                if (current == null || !email.equals(current.getEmail())) {
+                    continue;
+                }
+                sequence = persistence == null ? 0 : persistence.appendDelete(id);
+                records.remove(id);
+                unindex(current);
+                written(id, null);
+            }
+            awaitCommit(sequence);
+            return true;
+        }
+    }
+
+    /**
+     * Updates a {@link User}, whatever its current version.
+     *
+     * @param id           The ID of the {@link User} to update
+     * @param updatedUser  The updated {@link User} data
+     * @return The updated user
+     * @throws IllegalArgumentException if the {@link User} with the specified ID does not exist
+     *                                  or the new email is already taken
+     */
+    @Override
+    public User update(Long id, User updatedUser) {
+        return update(id, updatedUser, null);
+    }
+
+    /**
+     * Updates a {@link User}, optionally only if it is still at an expected version.
+     *
+     * <p>Stored users are never modified. The non-null fields of {@code updatedUser} are applied to
+     * a copy of the current user with the next version, and the copy replaces the stored user. The
+     * copy is built without locking; the stripes of the ID and of the old and new email are held
+     * only to check email uniqueness and to journal, swap and index the user. If another write
+     * replaced the user in the meantime, an unconditional update is reapplied on top of it while a
+     * conditional one fails. The copy is journaled before it becomes visible, so an update that
+     * cannot be journaled is never observed and cannot be lost on restart.</p>
+     *
+     * @param id              The ID of the {@link User} to update
+     * @param updatedUser     The updated {@link User} data
+     * @param expectedVersion The version the stored {@link User} must be at, or null for any version
+     * @return The updated user
+     * @throws IllegalArgumentException     if the {@link User} with the specified ID does not exist
+     *                                      or the new email is already taken
+     * @throws UserVersionConflictException if the stored {@link User} is not at the expected version
+     */
+    @Override
+    public User update(Long id, User updatedUser, Long expectedVersion) {
+        Objects.requireNonNull(updatedUser, "User must not be null");
+        while (true) {
+            User current = findById(id).orElseThrow(() -> new IllegalArgumentException("User not found"));
+            if (expectedVersion != null && current.getVersion() != expectedVersion) {
+                throw new UserVersionConflictException(id, expectedVersion, current.getVersion());
+            }
+            User updated = merge(current, updatedUser);
+
+            long sequence;
+            try (StripedLocks.Held ignored = writeLocks.lock(writeLocks.stripeOf(id),
+                    writeLocks.stripeOf(current.getEmail()), writeLocks.stripeOf(updated.getEmail()))) {
+                // Writers of a user hold the stripe of its ID, so the stored user cannot change from here on.
+                User stored = records.get(id);
+                if (stored == null || !Objects.equals(stored.getEmail(), current.getEmail())) {
+                    continue;
+                }
+                if (stored != current) {
+                    if (expectedVersion != null && stored.getVersion() != expectedVersion) {
+                        throw new UserVersionConflictException(id, expectedVersion, stored.getVersion());
+                    }
+                    updated = merge(stored, updatedUser);
+                }
+                if (!Objects.equals(updated.getEmail(), stored.getEmail())) {
+                    Long owner = findIdByEmail(updated.getEmail());
+                    if (owner != null && !owner.equals(id)) {
+                        throw new IllegalArgumentException("User with email: " + updated.getEmail() + " already exists");
+                    }
+                }
+                sequence = journalPut(updated);
+                if (!records.replace(stored, updated)) {
+                    throw new IllegalStateException("User with id: " + id + " changed while its stripe was held");
+                }
+                for (UserIndex index : indexes) {
+                    index.update(stored, updated);
+                }
+                written(id, updated);
+            }
+            awaitCommit(sequence);
+            return updated;
+        }
+    }
+
+    /**
+     * Runs a group of writes as one batch.
+     *
+     * <p>Every write stripe is taken once for the whole batch, so the individual
+     * {@link #save}, {@link #update} and {@link #deleteByEmail} calls made by {@code batch}
+     * re-enter them without contention and other writers observe the batch as a unit.</p>
+     *
+     * @param batch The writes to run
+     * @param <T>   The type of the batch result
+     * @return The value returned by {@code batch}
+     */
+    @Override
+    public <T> T executeInBatch(Supplier<T> batch) {
+        T result;
+        writeLocks.lockAll();
+        try {
+            result = batch.get();
+        } finally {
+            writeLocks.unlockAll();
+        }
+        if (persistence != null) {
+            awaitCommit(persistence.lastSequence());
+        }
+        return result;
+    }
+
+    /**
+     * Waits until every write made so far has been forced to disk, whatever the fsync policy.
+     *
+     * <p>Concurrent callers share the same force, so a writer that acknowledges a group of writes
+     * pays for one force per group. Returns at once if writes are not journaled.</p>
+     */
+    @Override
+    public void awaitDurable() {
+        if (persistence != null) {
+            persistence.awaitDurable(persistence.lastSequence());
+        }
+    }
+
+    /**
+     * Returns the number of stored users.
+     *
+     * @return The number of users
+     */
+    @Override
+    public int count() {
+        return records.size();
+    }
+
+    /**
+     * Looks up the ID for an email, scanning the store if the email index may still be incomplete.
+     */
+    private Long findIdByEmail(String email) {
+        Long id = emailIndex.findId(email);
+        if (id != null || indexesReady) {
+            indexLookups.increment();
+            return id;
+        }
+        scans.increment();
+        return records.stream()
+                .filter(user -> email.equals(user.getEmail()))
+                .map(User::getId)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Indexes every stored user in batches, re-reading each record under its write stripe so that
+     * concurrent writes are never overwritten with stale entries.
+     */
+    private void buildIndexes() {
+        long started = System.nanoTime();
+        Iterator<User> users = records.stream().iterator();
+        List<Long> batch = new ArrayList<>(INDEX_BUILD_BATCH);
+        while (users.hasNext()) {
+            batch.add(users.next().getId());
+            if (batch.size() == INDEX_BUILD_BATCH) {
+                indexBatch(batch);
+            }
+        }
+        indexBatch(batch);
+        indexesReady = true;
+        log.info("Indexed {} users in {} ms", indexedRecords.get(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void indexBatch(List<Long> ids) {
+        for (Long id : ids) {
+            try (StripedLocks.Held ignored = writeLocks.lock(writeLocks.stripeOf(id))) {
+                User user = records.get(id);
+                if (user != null) {
+                    index(user);
+                }
+            }
+        }
+        indexedRecords.addAndGet(ids.size());
+        ids.clear();
+    }
+
+    private void index(User user) {
+        reserveIdsUpTo(user.getId());
+        for (UserIndex index : indexes) {
+            index.add(user);
+        }
+    }
+
+    /**
+     * Makes sure that IDs allocated from now on are greater than an ID that is already in use.
+     */
+    private void reserveIdsUpTo(long id) {
+        ids.advance(Math.floorDiv(id, idStride) + 1);
+    }
+
+    private void unindex(User user) {
+        for (UserIndex index : indexes) {
+            index.remove(user);
+        }
+    }
+
+    private static boolean bornBetween(User user, LocalDate fromDate, LocalDate toDate) {
+        return user.getBirthDate() != null && user.getBirthDate().isAfter(fromDate) && user.getBirthDate().isBefore(toDate);
+    }
+
+    /**
+     * Counts the IDs in a group of ID sets, giving up once the count reaches {@code cutoff}.
+     */
+    private static long estimate(Collection<Set<Long>> ids, long cutoff) {
+        long count = 0;
+        for (Set<Long> group : ids) {
+            count += group.size();
+            if (count >= cutoff) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private void written(long id, User user) {
+        version.incrementAndGet();
+        for (UserWriteListener listener : writeListeners) {
+            listener.written(id, user);
+        }
+    }
+
+    private long journalPut(User user) {
+        return persistence == null ? 0 : persistence.appendPut(user);
+    }
+
+    /**
+     * Waits for the journal commit of a write, unless called from inside a batch, which waits once at its end.
+     */
+    private void awaitCommit(long sequence) {
+        if (persistence != null && sequence > 0 && !writeLocks.allHeldByCurrentThread()) {
+            persistence.awaitCommit(sequence);
+        }
+    }
+
+    /**
+     * Stores a recovered {@link User}, replacing any user with the same ID.
+     */
+    private void restore(User user) {
+        evict(user.getId());
+        records.put(user);
+        index(user);
+        written(user.getId(), user);
+    }
+
+    /**
+     * Removes a recovered deletion, leaving index entries that now belong to other users untouched.
+     */
+    private void evict(long id) {
+        User removed = records.remove(id);
+        if (removed != null) {
+            unindex(removed);
+            written(id, null);
+        }
+    }
+
+    /**
+     * Applies the non-null fields of a patch to a copy of a stored user with the next version.
+     */
+    private static User merge(User current, User patch) {
+        return new User(current.getId(),
+                patch.getEmail() != null ? patch.getEmail() : current.getEmail(),
+                patch.getFirstName() != null ? patch.getFirstName() : current.getFirstName(),
+                patch.getLastName() != null ? patch.getLastName() : current.getLastName(),
+                patch.getBirthDate() != null ? patch.getBirthDate() : current.getBirthDate(),
+                patch.getAddress() != null ? patch.getAddress() : current.getAddress(),
+                patch.getPhoneNumber() != null ? patch.getPhoneNumber() : current.getPhoneNumber(),
+                current.getVersion() + 1);
+    }
+}
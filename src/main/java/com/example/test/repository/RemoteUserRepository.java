@@ -0,0 +1,409 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserShardStatus;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link UserRepository} client for a user store running in another process, which exposes its
+ * repository through {@code com.example.test.controller.UserShardController}.
+ *
+ * <p>Calls are plain HTTP/1.1 requests with Smile bodies, which are smaller and cheaper to encode
+ * than JSON; streams are read as newline-delimited JSON while the response arrives. Every request
+ * fails with {@link UncheckedIOException} if the shard has not answered it within the request
+ * timeout. Rejected writes are reported with the same exceptions as a local repository.
+ * {@link #version()} and write listeners only cover writes made through this client, so a remote
+ * shard must not be written by anyone else.</p>
+ */
+public class RemoteUserRepository implements UserRepository {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final Duration requestTimeout;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+    private final AtomicLong version = new AtomicLong();
+    private final List<UserWriteListener> writeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs the client with the default request timeout of 30 seconds.
+     *
+     * @param baseUrl      The base URL of the remote application, e.g. {@code http://127.0.0.1:8081}
+     * @param objectMapper The ObjectMapper used to read and write users; its configuration is also used for Smile
+     */
+    public RemoteUserRepository(String baseUrl, ObjectMapper objectMapper) {
+        this(baseUrl, objectMapper, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Constructs the client.
+     *
+     * @param baseUrl        The base URL of the remote application, e.g. {@code http://127.0.0.1:8081}
+     * @param objectMapper   The ObjectMapper used to read and write users; its configuration is also used for Smile
+     * @param requestTimeout How long to wait for the response headers of each request; streamed
+     *                       bodies may take longer to arrive
+     */
+    public RemoteUserRepository(String baseUrl, ObjectMapper objectMapper, Duration requestTimeout) {
+        this.baseUri = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/").resolve("internal/shard/");
+        this.objectMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Retrieves the state of the remote store.
+     *
+     * @return The {@link UserShardStatus}
+     */
+    public UserShardStatus status() {
+        return send(get("status"), UserShardStatus.class);
+    }
+
+    @Override
+    public boolean indexesReady() {
+        return status().isIndexesReady();
+    }
+
+    @Override
+    public long indexedCount() {
+        return status().getIndexedUsers();
+    }
+
+    @Override
+    public long indexLookupCount() {
+        return status().getIndexLookups();
+    }
+
+    @Override
+    public long scanCount() {
+        return status().getScans();
+    }
+
+    /**
+     * Returns the number of writes made through this client.
+     *
+     * @return The current data version
+     */
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public void addWriteListener(UserWriteListener listener) {
+        writeListeners.add(listener);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return send(get("users"), new TypeReference<>() { });
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        return send(get("users/page?limit=" + limit + (afterId == null ? "" : "&after=" + afterId)),
+                new TypeReference<>() { });
+    }
+
+    @Override
+    public Stream<User> stream() {
+        return sendForStream(get("users/stream"));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return sendForOptional(get("users/" + id));
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return send(post("users/by-ids", ids), new TypeReference<>() { });
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return sendForOptional(get("users/by-email?email=" + encode(email)));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public List<User> findByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate) {
+        try (Stream<User> users = streamByBirthDateAfterAndBirthDateBefore(fromDate, toDate)) {
+            return users.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public Stream<User> streamByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate) {
+        return sendForStream(get("users/birth-date?from=" + fromDate + "&to=" + toDate));
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        return send(get("users/search?q=" + encode(query) + "&limit=" + limit), new TypeReference<>() { });
+    }
+
+    @Override
+    public List<User> query(UserQuery query, int limit) {
+        StringJoiner parameters = new StringJoiner("&", "users/query?", "");
+        parameters.add("limit=" + limit);
+        addParameter(parameters, "bornAfter", query.getBornAfter());
+        addParameter(parameters, "bornBefore", query.getBornBefore());
+        addParameter(parameters, "emailDomain", query.getEmailDomain());
+        addParameter(parameters, "lastNamePrefix", query.getLastNamePrefix());
+        addParameter(parameters, "hasPhoneNumber", query.getHasPhoneNumber());
+        addParameter(parameters, "hasAddress", query.getHasAddress());
+        return send(get(parameters.toString()), new TypeReference<>() { });
+    }
+
+    @Override
+    public User save(User user) {
+        User saved = send(post("users", user), User.class);
+        written(saved.getId(), saved);
+        return saved;
+    }
+
+    @Override
+    public long idLimit() {
+        return status().getIdLimit();
+    }
+
+    @Override
+    public boolean deleteByEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        HttpRequest request = request("users/by-email?email=" + encode(email)).DELETE().build();
+        Optional<Long> deleted = sendForOptional(request, smileMapper.constructType(Long.class));
+        deleted.ifPresent(id -> written(id, null));
+        return deleted.isPresent();
+    }
+
+    @Override
+    public User update(Long id, User updatedUser) {
+        return update(id, updatedUser, null);
+    }
+
+    @Override
+    public User update(Long id, User updatedUser, Long expectedVersion) {
+        if (id == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        HttpRequest request = request("users/" + id + (expectedVersion == null ? "" : "?expectedVersion=" + expectedVersion))
+                .header("Content-Type", SMILE)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(toSmile(updatedUser)))
+                .build();
+        User updated = send(request, User.class);
+        written(id, updated);
+        return updated;
+    }
+
+    /**
+     * Runs the batch without isolation: the remote store cannot be locked from this process.
+     *
+     * @param batch The writes to run
+     * @param <T>   The type of the batch result
+     * @return The value returned by {@code batch}
+     */
+    @Override
+    public <T> T executeInBatch(Supplier<T> batch) {
+        return batch.get();
+    }
+
+    @Override
+    public void awaitDurable() {
+        send(request("durable").POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Override
+    public int count() {
+        return status().getUsers();
+    }
+
+    private void written(long id, User user) {
+        version.incrementAndGet();
+        for (UserWriteListener listener : writeListeners) {
+            listener.written(id, user);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(requestTimeout).header("Accept", SMILE);
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest post(String path, Object body) {
+        return request(path)
+                .header("Content-Type", SMILE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(toSmile(body)))
+                .build();
+    }
+
+    private <T> T send(HttpRequest request, Class<T> type) {
+        return read(send(request, HttpResponse.BodyHandlers.ofByteArray()).body(), smileMapper.constructType(type));
+    }
+
+    private <T> T send(HttpRequest request, TypeReference<T> type) {
+        return read(send(request, HttpResponse.BodyHandlers.ofByteArray()).body(), smileMapper.constructType(type));
+    }
+
+    private Optional<User> sendForOptional(HttpRequest request) {
+        return sendForOptional(request, smileMapper.constructType(User.class));
+    }
+
+    /**
+     * Sends a request whose target may not exist, answered with {@code 404}.
+     */
+    private <T> Optional<T> sendForOptional(HttpRequest request, JavaType type) {
+        HttpResponse<byte[]> response = exchange(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        check(response, response.body());
+        return Optional.of(read(response.body(), type));
+    }
+
+    /**
+     * Sends a request answered with newline-delimited JSON users and reads them as the stream is consumed.
+     */
+    private Stream<User> sendForStream(HttpRequest request) {
+        HttpRequest streaming = HttpRequest.newBuilder(request, (name, value) -> !name.equalsIgnoreCase("Accept"))
+                .header("Accept", NDJSON)
+                .build();
+        HttpResponse<InputStream> response = exchange(streaming, HttpResponse.BodyHandlers.ofInputStream());
+        InputStream body = response.body();
+        try {
+            if (response.statusCode() != 200) {
+                check(response, body.readAllBytes());
+            }
+            MappingIterator<User> users = objectMapper.readerFor(User.class).readValues(body);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED), false)
+                    .onClose(() -> {
+                        try {
+                            users.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        HttpResponse<T> response = exchange(request, handler);
+        check(response, response.body() instanceof byte[] bytes ? bytes : new byte[0]);
+        return response;
+    }
+
+    private <T> HttpResponse<T> exchange(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        try {
+            return client.send(request, handler);
+        } catch (HttpTimeoutException e) {
+            throw new UncheckedIOException("User shard " + baseUri + " did not answer within " + requestTimeout, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("User shard " + baseUri + " is unreachable", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while calling user shard " + baseUri));
+        }
+    }
+
+    /**
+     * Turns an error response into the exception the remote repository threw.
+     */
+    private void check(HttpResponse<?> response, byte[] body) {
+        int status = response.statusCode();
+        if (status < 300) {
+            return;
+        }
+        if (status == 400) {
+            throw new IllegalArgumentException(new String(body, StandardCharsets.UTF_8));
+        }
+        if (status == 412) {
+            JsonNode conflict = read(body, smileMapper.constructType(JsonNode.class));
+            throw new UserVersionConflictException(conflict.path("id").asLong(),
+                    conflict.path("expectedVersion").asLong(), conflict.path("currentVersion").asLong());
+        }
+        throw new IllegalStateException("User shard " + baseUri + " answered " + response.request().method() + ' '
+                + response.uri().getPath() + " with status " + status);
+    }
+
+    private <T> T read(byte[] body, JavaType type) {
+        try {
+            return smileMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] toSmile(Object value) {
+        try {
+            return smileMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addParameter(StringJoiner parameters, String name, Object value) {
+        if (value != null) {
+            parameters.add(name + '=' + encode(value.toString()));
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
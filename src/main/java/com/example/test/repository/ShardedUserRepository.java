@@ -0,0 +1,445 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.repository.index.SearchIndex;
+import jakarta.annotation.PreDestroy;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link UserRepository} that partitions users over several shards by ID.
+ *
+ * <p>A user with ID {@code id} lives in shard {@code id mod n}. Shard {@code k} allocates only IDs
+ * congruent to {@code k} modulo {@code n} (see {@link LocalUserRepository}'s ID stride), so a new
+ * user is saved to a random shard and the ID it receives routes to that shard from then on. Each
+ * shard has its own indexes and write path. Lookups by ID go to one shard. Lookups by any other
+ * key, such as {@link #findAll()}, birth date ranges, searches and {@link #deleteByEmail}, are sent
+ * to every shard in parallel and the results are merged in the order the single-node repository
+ * returns them.</p>
+ *
+ * <p>Emails are unique across shards: every write that introduces an email holds that email's
+ * {@link StripedLocks stripe} of the router while it checks all shards. Shards must therefore
+ * only be written through one router. {@link #executeInBatch} holds every router stripe and runs
+ * the batch inside the batch of each shard, so it excludes all other writers to local shards;
+ * remote shards cannot be locked from here and apply batched writes one at a time.</p>
+ */
+public class ShardedUserRepository implements UserRepository {
+
+    private static final int EMAIL_STRIPES_PER_CORE = 8;
+
+    private final List<UserRepository> shards;
+    private final StripedLocks emailLocks = new StripedLocks(EMAIL_STRIPES_PER_CORE * Runtime.getRuntime().availableProcessors());
+    private final ExecutorService fanOut;
+
+    /**
+     * Constructs the router.
+     *
+     * <p>Calls to all shards run on a fixed pool of one thread per shard and processor, so a
+     * burst of fan-out queries queues up instead of starting threads without bound.</p>
+     *
+     * @param shards The shards; shard {@code k} must allocate IDs congruent to {@code k} modulo their number
+     */
+    public ShardedUserRepository(List<? extends UserRepository> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.fanOut = Executors.newFixedThreadPool(shards.size() * Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "user-shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the shard that holds a user ID.
+     *
+     * @param id The user ID
+     * @return The shard
+     */
+    public UserRepository shardOf(long id) {
+        return shards.get((int) Math.floorMod(id, (long) shards.size()));
+    }
+
+    @Override
+    public boolean indexesReady() {
+        return gather(UserRepository::indexesReady).stream().allMatch(Boolean::booleanValue);
+    }
+
+    @Override
+    public long indexedCount() {
+        return gather(UserRepository::indexedCount).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long indexLookupCount() {
+        return gather(UserRepository::indexLookupCount).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long scanCount() {
+        return gather(UserRepository::scanCount).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Returns the sum of the shard versions, which changes whenever any shard is written.
+     *
+     * @return The current data version
+     */
+    @Override
+    public long version() {
+        long version = 0;
+        for (UserRepository shard : shards) {
+            version += shard.version();
+        }
+        return version;
+    }
+
+    @Override
+    public void addWriteListener(UserWriteListener listener) {
+        for (UserRepository shard : shards) {
+            shard.addWriteListener(listener);
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        return gather(UserRepository::findAll).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(User::getId))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        return gather(shard -> shard.findPage(afterId, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Streams the users of one shard after another.
+     *
+     * @return Stream of all users
+     */
+    @Override
+    public Stream<User> stream() {
+        return shards.stream().flatMap(UserRepository::stream);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return id == null ? Optional.empty() : shardOf(id).findById(id);
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        Map<UserRepository, List<Long>> idsByShard = new HashMap<>();
+        for (Long id : ids) {
+            if (id != null) {
+                idsByShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id);
+            }
+        }
+        List<CompletableFuture<List<User>>> lookups = new ArrayList<>(idsByShard.size());
+        idsByShard.forEach((shard, shardIds) -> lookups.add(async(() -> shard.findAllById(shardIds))));
+        Map<Long, User> usersById = new HashMap<>();
+        for (CompletableFuture<List<User>> lookup : lookups) {
+            for (User user : join(lookup)) {
+                usersById.put(user.getId(), user);
+            }
+        }
+        List<User> result = new ArrayList<>(usersById.size());
+        for (Long id : ids) {
+            User user = id == null ? null : usersById.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return gather(shard -> shard.findByEmail(email)).stream()
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && shardOf(id).existsById(id);
+    }
+
+    @Override
+    public List<User> findByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate) {
+        return gather(shard -> shard.findByBirthDateAfterAndBirthDateBefore(fromDate, toDate)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(User::getBirthDate))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily merges the birth date ordered streams of all shards.
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return Stream of users whose birth date lies inside the range
+     */
+    @Override
+    public Stream<User> streamByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate) {
+        List<Stream<User>> streams = gather(shard -> shard.streamByBirthDateAfterAndBirthDateBefore(fromDate, toDate));
+        return merge(streams, Comparator.comparing(User::getBirthDate));
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        List<String> tokens = SearchIndex.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        Map<User, Integer> scores = new HashMap<>();
+        for (List<User> matches : gather(shard -> shard.search(query, limit))) {
+            for (User user : matches) {
+                scores.put(user, SearchIndex.score(user, tokens));
+            }
+        }
+        return scores.keySet().stream()
+                .sorted(Comparator.<User>comparingInt(scores::get).reversed().thenComparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> query(UserQuery query, int limit) {
+        return gather(shard -> shard.query(query, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Saves a {@link User} to the shard of its ID, or to a random shard if it has none.
+     *
+     * @param user The {@link User} to save
+     * @return The saved {@link User}, carrying its ID
+     * @throws IllegalArgumentException if the ID or email is already taken
+     */
+    @Override
+    public User save(User user) {
+        try (StripedLocks.Held ignored = emailLocks.lock(emailLocks.stripeOf(user.getEmail()))) {
+            requireUnusedEmail(user.getEmail(), null);
+            UserRepository shard = user.getId() != null ? shardOf(user.getId())
+                    : shards.get(ThreadLocalRandom.current().nextInt(shards.size()));
+            return shard.save(user);
+        }
+    }
+
+    @Override
+    public long idLimit() {
+        return gather(UserRepository::idLimit).stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    /**
+     * Looks the email up on every shard in parallel and deletes it from the shards that have it.
+     *
+     * <p>The deletes run on the calling thread, which may hold the write stripes of local shards
+     * inside {@link #executeInBatch}.</p>
+     *
+     * @param email The email of the {@link User} to delete
+     * @return True if the {@link User} was deleted, otherwise false
+     */
+    @Override
+    public boolean deleteByEmail(String email) {
+        if (email == null) {
+            return false;
+        }
+        List<Boolean> found = gather(shard -> shard.findByEmail(email).isPresent());
+        boolean deleted = false;
+        for (int i = 0; i < found.size(); i++) {
+            if (found.get(i)) {
+                deleted |= shards.get(i).deleteByEmail(email);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public User update(Long id, User updatedUser) {
+        return update(id, updatedUser, null);
+    }
+
+    @Override
+    public User update(Long id, User updatedUser, Long expectedVersion) {
+        if (id == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        try (StripedLocks.Held ignored = emailLocks.lock(emailLocks.stripeOf(updatedUser.getEmail()))) {
+            requireUnusedEmail(updatedUser.getEmail(), id);
+            return shardOf(id).update(id, updatedUser, expectedVersion);
+        }
+    }
+
+    @Override
+    public <T> T executeInBatch(Supplier<T> batch) {
+        emailLocks.lockAll();
+        try {
+            return inShardBatches(0, batch);
+        } finally {
+            emailLocks.unlockAll();
+        }
+    }
+
+    @Override
+    public void awaitDurable() {
+        gather(shard -> {
+            shard.awaitDurable();
+            return null;
+        });
+    }
+
+    @Override
+    public int count() {
+        return gather(UserRepository::count).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Stops the fan-out threads.
+     */
+    @PreDestroy
+    public void close() {
+        fanOut.shutdownNow();
+    }
+
+    /**
+     * Runs a batch nested inside the batches of this and all following shards.
+     */
+    private <T> T inShardBatches(int first, Supplier<T> batch) {
+        if (first == shards.size()) {
+            return batch.get();
+        }
+        return shards.get(first).executeInBatch(() -> inShardBatches(first + 1, batch));
+    }
+
+    /**
+     * Checks on every shard that no user other than {@code id} has the email. The caller holds the email's stripe.
+     */
+    private void requireUnusedEmail(String email, Long id) {
+        if (email == null) {
+            return;
+        }
+        Optional<User> owner = findByEmail(email);
+        if (owner.isPresent() && !owner.get().getId().equals(id)) {
+            throw new IllegalArgumentException("User with email: " + email + " already exists");
+        }
+    }
+
+    /**
+     * Calls every shard in parallel and returns the results in shard order.
+     */
+    private <R> List<R> gather(Function<UserRepository, R> call) {
+        if (shards.size() == 1) {
+            return List.of(call.apply(shards.get(0)));
+        }
+        List<CompletableFuture<R>> calls = new ArrayList<>(shards.size());
+        for (UserRepository shard : shards) {
+            calls.add(async(() -> call.apply(shard)));
+        }
+        List<R> results = new ArrayList<>(calls.size());
+        for (CompletableFuture<R> future : calls) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    private <R> CompletableFuture<R> async(Supplier<R> call) {
+        return CompletableFuture.supplyAsync(call, fanOut);
+    }
+
+    /**
+     * Waits for a shard call, rethrowing what the shard threw.
+     */
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Merges streams that are each sorted by {@code order} into one sorted stream, pulling from
+     * each only as the result is consumed. Closing the result closes every input.
+     */
+    private static Stream<User> merge(List<Stream<User>> streams, Comparator<User> order) {
+        List<Iterator<User>> iterators = streams.stream().map(Stream::iterator).toList();
+        PriorityQueue<Map.Entry<User, Iterator<User>>> heads =
+                new PriorityQueue<>(Math.max(1, streams.size()), Map.Entry.comparingByKey(order));
+        Iterator<User> merged = new Iterator<>() {
+
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    for (Iterator<User> iterator : iterators) {
+                        advance(iterator);
+                    }
+                    started = true;
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<User, Iterator<User>> head = heads.poll();
+                advance(head.getValue());
+                return head.getKey();
+            }
+
+            private void advance(Iterator<User> iterator) {
+                if (iterator.hasNext()) {
+                    heads.add(Map.entry(iterator.next(), iterator));
+                }
+            }
+        };
+        Stream<User> result = StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false);
+        for (Stream<User> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.test.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of reentrant locks that user IDs and emails are hashed onto, so that writes to
+ * unrelated users proceed in parallel.
+ *
+ * <p>A write locks the stripes of every key it touches. Stripes are always taken in ascending
+ * order, which rules out deadlocks between writers; {@link #lockAll()} takes every stripe the same
+ * way and therefore excludes all other writers.</p>
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Creates the locks.
+     *
+     * @param count The minimum number of stripes, rounded up to a power of two
+     */
+    StripedLocks(int count) {
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the stripe of a user ID.
+     *
+     * @param id The ID
+     * @return The stripe index
+     */
+    int stripeOf(long id) {
+        return spread(Long.hashCode(id));
+    }
+
+    /**
+     * Returns the stripe of an email.
+     *
+     * @param email The email, may be null
+     * @return The stripe index, or -1 for null
+     */
+    int stripeOf(String email) {
+        return email == null ? -1 : spread(email.hashCode());
+    }
+
+    /**
+     * Locks the given stripes in ascending order, ignoring negative and repeated ones.
+     *
+     * @param stripeIndexes The stripes to lock
+     * @return The held stripes, to be closed once the write is done
+     */
+    Held lock(int... stripeIndexes) {
+        int[] sorted = Arrays.stream(stripeIndexes).filter(stripe -> stripe >= 0).sorted().distinct().toArray();
+        for (int stripe : sorted) {
+            stripes[stripe].lock();
+        }
+        return new Held(sorted);
+    }
+
+    /**
+     * Locks every stripe, excluding all other writers.
+     */
+    void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Unlocks every stripe locked by {@link #lockAll()}.
+     */
+    void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    /**
+     * Reports whether the current thread holds every stripe, as it does inside {@link #lockAll()}.
+     *
+     * @return True if all stripes are held by the current thread
+     */
+    boolean allHeldByCurrentThread() {
+        for (ReentrantLock stripe : stripes) {
+            if (!stripe.isHeldByCurrentThread()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9 >>> 16 & mask;
+    }
+
+    /**
+     * Stripes held by one write.
+     */
+    final class Held implements AutoCloseable {
+
+        private final int[] held;
+
+        private Held(int[] held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            for (int i = held.length - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.repository.index.EmailDomainIndex;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Conjunction of optional predicates over stored users. A null field places no restriction.
+ */
+@Getter
+@AllArgsConstructor
+public class UserQuery {
+
+    /**
+     * Exclusive lower bound of the birth date.
+     */
+    private final LocalDate bornAfter;
+
+    /**
+     * Exclusive upper bound of the birth date.
+     */
+    private final LocalDate bornBefore;
+
+    /**
+     * Domain of the email address, matched case-insensitively.
+     */
+    private final String emailDomain;
+
+    /**
+     * Prefix of the last name, matched case-insensitively.
+     */
+    private final String lastNamePrefix;
+
+    /**
+     * Whether the user must have (true) or must not have (false) a phone number.
+     */
+    private final Boolean hasPhoneNumber;
+
+    /**
+     * Whether the user must have (true) or must not have (false) an address.
+     */
+    private final Boolean hasAddress;
+
+    /**
+     * Checks whether a {@link User} satisfies every predicate of the query.
+     *
+     * @param user The {@link User} to check
+     * @return True if the user matches
+     */
+    public boolean matches(User user) {
+        LocalDate birthDate = user.getBirthDate();
+        if ((bornAfter != null || bornBefore != null) && birthDate == null) {
+            return false;
+        }
+        if (bornAfter != null && !birthDate.isAfter(bornAfter)) {
+            return false;
+        }
+        if (bornBefore != null && !birthDate.isBefore(bornBefore)) {
+            return false;
+        }
+        if (emailDomain != null && !emailDomain.equalsIgnoreCase(EmailDomainIndex.domainOf(user.getEmail()))) {
+            return false;
+        }
+        if (lastNamePrefix != null && (user.getLastName() == null
+                || !user.getLastName().toLowerCase(Locale.ROOT).startsWith(lastNamePrefix.toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+        if (hasPhoneNumber != null && hasPhoneNumber != isPresent(user.getPhoneNumber())) {
+            return false;
+        }
+        return hasAddress == null || hasAddress == isPresent(user.getAddress());
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.isBlank();
+    }
+}
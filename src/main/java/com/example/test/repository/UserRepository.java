@@ -1,32 +1,93 @@
 package com.example.test.repository;
 
 import com.example.test.model.User;
-import lombok.Getter;
-import lombok.Setter;
-import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
- * Repository class for managing {@link User} entities.
+ * Repository interface for managing {@link User} entities.
+ *
+ * <p>{@link LocalUserRepository} keeps users in this process. {@link ShardedUserRepository}
+ * partitions them by ID over several repositories, which may be local or
+ * {@link RemoteUserRepository remote}, and answers the same calls by routing or by scatter-gather.</p>
  */
-@Repository
-@Getter
-@Setter
-public class UserRepository {
+public interface UserRepository {
 
-    private final List<User> users = new ArrayList<>();
+    /**
+     * Reports whether the secondary indexes cover every stored user.
+     *
+     * @return True once the startup index build has finished
+     */
+    boolean indexesReady();
+
+    /**
+     * Returns how many stored users the startup index build has processed so far.
+     *
+     * @return The number of indexed users
+     */
+    long indexedCount();
+
+    /**
+     * Returns how many lookups were answered from a secondary index.
+     *
+     * @return The number of index lookups
+     */
+    long indexLookupCount();
+
+    /**
+     * Returns how many lookups had to scan the store.
+     *
+     * @return The number of scans
+     */
+    long scanCount();
+
+    /**
+     * Returns a number that changes whenever a user is saved, updated or deleted.
+     *
+     * <p>The version is advanced after the write is visible, so a result computed after reading
+     * a version reflects at least every write up to that version.</p>
+     *
+     * @return The current data version
+     */
+    long version();
+
+    /**
+     * Registers a listener that is called with every saved, updated or deleted user.
+     *
+     * <p>Listeners run on the writing thread after the write and the {@link #version()} advance are
+     * visible, so they must be fast and must not write users.</p>
+     *
+     * @param listener Receives each written user
+     */
+    void addWriteListener(UserWriteListener listener);
 
     /**
      * Retrieves all users.
      *
-     * @return List of all users
+     * @return List of all users, in ascending ID order
+     */
+    List<User> findAll();
+
+    /**
+     * Retrieves a page of users ordered by ID.
+     *
+     * @param afterId The ID to continue after, or null to start from the beginning
+     * @param limit   The maximum number of users to return
+     * @return List of at most {@code limit} users with IDs greater than {@code afterId}
+     */
+    List<User> findPage(Long afterId, int limit);
+
+    /**
+     * Streams all users without copying the store. The stream is weakly consistent.
+     *
+     * @return Stream of all users
      */
-    public List<User> findAll() {
-        return new ArrayList<>(users);
-    }
+    Stream<User> stream();
 
     /**
      * Finds a {@link User} by ID.
@@ -34,9 +95,23 @@ public class UserRepository {
      * @param id The ID of the {@link User} to find
      * @return An Optional containing the {@link User} if found, otherwise empty
      */
-    public Optional<User> findById(Long id) {
-        return users.stream().filter(user -> user.getId().equals(id)).findFirst();
-    }
+    Optional<User> findById(Long id);
+
+    /**
+     * Finds the users with the given IDs.
+     *
+     * @param ids The IDs to look up
+     * @return List of the users found, in the order of {@code ids}; unknown IDs are skipped
+     */
+    List<User> findAllById(Collection<Long> ids);
+
+    /**
+     * Finds a {@link User} by email.
+     *
+     * @param email The email of the {@link User} to find
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    Optional<User> findByEmail(String email);
 
     /**
      * Checks if a {@link User} exists by ID.
@@ -44,20 +119,63 @@ public class UserRepository {
      * @param id The ID of the {@link User} to check
      * @return True if the {@link User} exists, otherwise false
      */
-    public boolean existsById(Long id) {
-        return users.stream().anyMatch(user -> user.getId().equals(id));
-    }
+    boolean existsById(Long id);
+
+    /**
+     * Finds users born strictly between two dates.
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return List of users whose birth date lies inside the range
+     */
+    List<User> findByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Lazily streams users born strictly between two dates, in birth date order once the indexes are ready.
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return Stream of users whose birth date lies inside the range
+     */
+    Stream<User> streamByBirthDateAfterAndBirthDateBefore(LocalDate fromDate, LocalDate toDate);
 
     /**
-     * Saves a {@link User}.
+     * Searches first name, last name, email and address for users matching every token of a query by prefix.
+     *
+     * @param query The search text
+     * @param limit The maximum number of users to return
+     * @return The best matching users, best match first, ties broken by ascending ID
+     */
+    List<User> search(String query, int limit);
+
+    /**
+     * Finds users matching every predicate of a {@link UserQuery}.
+     *
+     * @param query The predicates to apply
+     * @param limit The maximum number of users to return
+     * @return The matching users with the lowest IDs, in ascending ID order
+     */
+    List<User> query(UserQuery query, int limit);
+
+    /**
+     * Saves a {@link User}, assigning it a new ID if it has none.
+     *
+     * <p>An explicit ID may lie at most a bounded distance above
+     * {@link #idLimit()}, so that a single save cannot move the allocated IDs arbitrarily far
+     * or towards overflow.</p>
      *
      * @param user The {@link User} to save
-     * @return The saved {@link User}
+     * @return The saved {@link User}, carrying its ID
+     * @throws IllegalArgumentException if the ID or email is already taken, or the ID is too large
      */
-    public User save(User user) {
-        users.add(user);
-        return user;
-    }
+    User save(User user);
+
+    /**
+     * Returns the ID high-water mark: every ID allocated by {@link #save} so far is below it.
+     *
+     * @return The mark
+     */
+    long idLimit();
 
     /**
      * Deletes a {@link User} by email.
@@ -65,46 +183,50 @@ public class UserRepository {
      * @param email The email of the {@link User} to delete
      * @return True if the {@link User} was deleted, otherwise false
      */
-    public boolean deleteByEmail(String email) {
-        return users.removeIf(user -> user.getEmail().equals(email));
-    }
+    boolean deleteByEmail(String email);
 
     /**
-     * Updates a {@link User}.
+     * Updates a {@link User}, whatever its current version.
      *
-     * @param id           The ID of the {@link User} to update
-     * @param updatedUser  The updated {@link User} data
+     * @param id          The ID of the {@link User} to update
+     * @param updatedUser The updated {@link User} data
      * @return The updated user
      * @throws IllegalArgumentException if the {@link User} with the specified ID does not exist
+     *                                  or the new email is already taken
+     */
+    User update(Long id, User updatedUser);
+
+    /**
+     * Updates a {@link User}, optionally only if it is still at an expected version.
+     *
+     * @param id              The ID of the {@link User} to update
+     * @param updatedUser     The updated {@link User} data; its non-null fields are applied
+     * @param expectedVersion The version the stored {@link User} must be at, or null for any version
+     * @return The updated user
+     * @throws IllegalArgumentException     if the {@link User} with the specified ID does not exist
+     *                                      or the new email is already taken
+     * @throws UserVersionConflictException if the stored {@link User} is not at the expected version
+     */
+    User update(Long id, User updatedUser, Long expectedVersion);
+
+    /**
+     * Runs a group of writes as one batch that other writers observe as a unit.
+     *
+     * @param batch The writes to run
+     * @param <T>   The type of the batch result
+     * @return The value returned by {@code batch}
+     */
+    <T> T executeInBatch(Supplier<T> batch);
+
+    /**
+     * Waits until every write made so far has been forced to disk. Returns at once if writes are not journaled.
+     */
+    void awaitDurable();
+
+    /**
+     * Returns the number of stored users.
+     *
+     * @return The number of users
      */
-    public User update(Long id, User updatedUser) {
-        Optional<User> optionalUser = findById(id);
-
-        if (optionalUser.isPresent()) {
-            User existingUser = optionalUser.get();
-
-            if (updatedUser.getEmail() != null) {
-                existingUser.setEmail(updatedUser.getEmail());
-            }
-            if (updatedUser.getFirstName() != null) {
-                existingUser.setFirstName(updatedUser.getFirstName());
-            }
-            if (updatedUser.getLastName() != null) {
-                existingUser.setLastName(updatedUser.getLastName());
-            }
-            if (updatedUser.getBirthDate() != null) {
-                existingUser.setBirthDate(updatedUser.getBirthDate());
-            }
-            if (updatedUser.getAddress() != null) {
-                existingUser.setAddress(updatedUser.getAddress());
-            }
-            if (updatedUser.getPhoneNumber() != null) {
-                existingUser.setPhoneNumber(updatedUser.getPhoneNumber());
-            }
-
-            return existingUser;
-        } else {
-            throw new IllegalArgumentException("User not found");
-        }
-    }
+    int count();
 }
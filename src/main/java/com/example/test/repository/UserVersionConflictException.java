@@ -0,0 +1,29 @@
+package com.example.test.repository;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a conditional write expects a different version of a {@link com.example.test.model.User}
+ * than the one that is stored.
+ */
+@Getter
+public class UserVersionConflictException extends RuntimeException {
+
+    private final long id;
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param id              The ID of the user
+     * @param expectedVersion The version the write was conditional on
+     * @param currentVersion  The stored version
+     */
+    public UserVersionConflictException(long id, long expectedVersion, long currentVersion) {
+        super("User with id: " + id + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+}
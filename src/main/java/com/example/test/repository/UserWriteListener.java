@@ -0,0 +1,18 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+
+/**
+ * Receives every user written to a {@link UserRepository}.
+ */
+@FunctionalInterface
+public interface UserWriteListener {
+
+    /**
+     * Called after a user was saved, updated or deleted.
+     *
+     * @param id   The ID of the written user
+     * @param user The user as stored after the write, or null if it was deleted
+     */
+    void written(long id, User user);
+}
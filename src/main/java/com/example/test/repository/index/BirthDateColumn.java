@@ -0,0 +1,194 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+import com.example.test.repository.storage.OffHeapLongMap;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Dense column of birth dates, as epoch day, next to the IDs they belong to, for scanning wide
+ * birth date ranges.
+ *
+ * <p>Users occupy consecutive slots of a primitive {@code int[]} and {@code long[]}; a removal moves
+ * the last slot into the gap. {@link #idsBetween} compares plain ints in fixed-size chunks spread
+ * over the common fork-join pool, so a scan matching millions of users allocates nothing per user.
+ * The slot of each ID is kept in an {@link OffHeapLongMap}.</p>
+ *
+ * <p>Scans are weakly consistent: a scan running concurrently with writes may report an ID whose
+ * birth date has just changed, so callers must re-check the users they load.</p>
+ */
+public class BirthDateColumn implements UserIndex {
+
+    private static final int NO_BIRTH_DATE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int CHUNK_SLOTS = 1 << 15;
+
+    private final OffHeapLongMap slotsById = new OffHeapLongMap(INITIAL_CAPACITY);
+
+    private volatile long[] ids = new long[INITIAL_CAPACITY];
+    private volatile int[] days = new int[INITIAL_CAPACITY];
+    private volatile int size;
+
+    @Override
+    public synchronized void add(User user) {
+        long slot = slotsById.get(user.getId());
+        if (slot != OffHeapLongMap.MISSING) {
+            days[(int) slot] = dayOf(user.getBirthDate());
+            return;
+        }
+        int next = size;
+        if (next == ids.length) {
+            int capacity = next + (next >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+        ids[next] = user.getId();
+        days[next] = dayOf(user.getBirthDate());
+        slotsById.put(user.getId(), next);
+        size = next + 1;
+    }
+
+    @Override
+    public synchronized void remove(User user) {
+        long slot = slotsById.remove(user.getId());
+        if (slot == OffHeapLongMap.MISSING) {
+            return;
+        }
+        int last = size - 1;
+        if (slot != last) {
+            ids[(int) slot] = ids[last];
+            days[(int) slot] = days[last];
+            slotsById.put(ids[last], slot);
+        }
+        size = last;
+    }
+
+    @Override
+    public synchronized void update(User previous, User current) {
+        long slot = slotsById.get(current.getId());
+        if (slot == OffHeapLongMap.MISSING) {
+            add(current);
+        } else {
+            days[(int) slot] = dayOf(current.getBirthDate());
+        }
+    }
+
+    /**
+     * Returns the IDs of users born strictly between two dates by scanning the whole column in parallel.
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return The matching IDs in birth date order
+     */
+    public long[] idsBetween(LocalDate fromDate, LocalDate toDate) {
+        int count = size;
+        int[] dayColumn = days;
+        long[] idColumn = ids;
+        int from = clamp(fromDate.toEpochDay());
+        int to = clamp(toDate.toEpochDay());
+        if ((long) from + 1 >= to || count == 0) {
+            return new long[0];
+        }
+
+        long[][] chunks = new long[(count + CHUNK_SLOTS - 1) / CHUNK_SLOTS][];
+        ForkJoinPool.commonPool().invoke(new ScanTask(dayColumn, count, from, to, chunks, 0, chunks.length));
+        long[] keys = concat(chunks);
+        Arrays.parallelSort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = idColumn[(int) keys[i]];
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the number of users in the column.
+     *
+     * @return The number of users
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Maps a birth date to its column value, keeping {@link #NO_BIRTH_DATE} for users without one.
+     */
+    private static int dayOf(LocalDate birthDate) {
+        return birthDate == null ? NO_BIRTH_DATE : clamp(birthDate.toEpochDay());
+    }
+
+    private static int clamp(long epochDay) {
+        return (int) Math.max(NO_BIRTH_DATE + 1L, Math.min(Integer.MAX_VALUE, epochDay));
+    }
+
+    private static long[] concat(long[][] chunks) {
+        int total = 0;
+        for (long[] chunk : chunks) {
+            total += chunk.length;
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (long[] chunk : chunks) {
+            System.arraycopy(chunk, 0, all, position, chunk.length);
+            position += chunk.length;
+        }
+        return all;
+    }
+
+    /**
+     * Scans a range of chunks, splitting it in halves until a single chunk is left.
+     *
+     * <p>Each match is recorded as its epoch day in the high and its slot in the low 32 bits, so
+     * that sorting the results orders them by birth date.</p>
+     */
+    private static final class ScanTask extends RecursiveAction {
+
+        private final int[] days;
+        private final int count;
+        private final int from;
+        private final int to;
+        private final long[][] chunks;
+        private final int firstChunk;
+        private final int endChunk;
+
+        ScanTask(int[] days, int count, int from, int to, long[][] chunks, int firstChunk, int endChunk) {
+            this.days = days;
+            this.count = count;
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk > 1) {
+                int middle = (firstChunk + endChunk) >>> 1;
+                invokeAll(new ScanTask(days, count, from, to, chunks, firstChunk, middle),
+                        new ScanTask(days, count, from, to, chunks, middle, endChunk));
+                return;
+            }
+            int start = firstChunk * CHUNK_SLOTS;
+            int end = Math.min(count, start + CHUNK_SLOTS);
+            int matches = 0;
+            for (int slot = start; slot < end; slot++) {
+                int day = days[slot];
+                if (day > from && day < to) {
+                    matches++;
+                }
+            }
+            long[] keys = new long[matches];
+            int next = 0;
+            for (int slot = start; slot < end && next < matches; slot++) {
+                int day = days[slot];
+                if (day > from && day < to) {
+                    keys[next++] = (long) day << 32 | slot;
+                }
+            }
+            chunks[firstChunk] = next == matches ? keys : Arrays.copyOf(keys, next);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted index from birth date, as epoch day, to the IDs of users born on that day.
+ */
+public class BirthDateIndex implements UserIndex {
+
+    private final ConcurrentNavigableMap<Long, Set<Long>> idsByBirthDay = new ConcurrentSkipListMap<>();
+    private final IdSets<Long> idSets = new IdSets<>(idsByBirthDay);
+
+    @Override
+    public void add(User user) {
+        if (user.getBirthDate() != null) {
+            idSets.add(user.getBirthDate().toEpochDay(), user.getId());
+        }
+    }
+
+    @Override
+    public void remove(User user) {
+        if (user.getBirthDate() != null) {
+            idSets.remove(user.getBirthDate().toEpochDay(), user.getId());
+        }
+    }
+
+    @Override
+    public void update(User previous, User current) {
+        if (!Objects.equals(previous.getBirthDate(), current.getBirthDate())) {
+            remove(previous);
+            add(current);
+        }
+    }
+
+    /**
+     * Returns the IDs of users born strictly between two dates, grouped by day.
+     *
+     * @param fromDate The exclusive start of the range
+     * @param toDate   The exclusive end of the range
+     * @return The ID sets of every day in the range, in date order
+     */
+    public Collection<Set<Long>> idsBetween(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate.toEpochDay() + 1 >= toDate.toEpochDay()) {
+            return List.of();
+        }
+        return idsByBirthDay.subMap(fromDate.toEpochDay(), false, toDate.toEpochDay(), false).values();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index from the lower-cased domain of an email address to the IDs of users with that domain.
+ */
+public class EmailDomainIndex implements UserIndex {
+
+    private final ConcurrentMap<String, Set<Long>> idsByDomain = new ConcurrentHashMap<>();
+    private final IdSets<String> idSets = new IdSets<>(idsByDomain);
+
+    @Override
+    public void add(User user) {
+        String domain = domainOf(user.getEmail());
+        if (domain != null) {
+            idSets.add(domain, user.getId());
+        }
+    }
+
+    @Override
+    public void remove(User user) {
+        String domain = domainOf(user.getEmail());
+        if (domain != null) {
+            idSets.remove(domain, user.getId());
+        }
+    }
+
+    @Override
+    public void update(User previous, User current) {
+        if (!Objects.equals(domainOf(previous.getEmail()), domainOf(current.getEmail()))) {
+            remove(previous);
+            add(current);
+        }
+    }
+
+    /**
+     * Returns the IDs of users whose email has the given domain.
+     *
+     * @param domain The domain, matched case-insensitively
+     * @return The matching ID set, or no set if there is none
+     */
+    public Collection<Set<Long>> idsWithDomain(String domain) {
+        Set<Long> ids = idsByDomain.get(domain.toLowerCase(Locale.ROOT));
+        return ids == null ? List.of() : List.of(ids);
+    }
+
+    /**
+     * Returns the lower-cased part of an email address after its last {@code @}.
+     *
+     * @param email The email address, may be null
+     * @return The domain, or null if the address has none
+     */
+    public static String domainOf(String email) {
+        if (email == null) {
+            return null;
+        }
+        int at = email.lastIndexOf('@');
+        return at < 0 || at == email.length() - 1 ? null : email.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unique index from email to user ID.
+ */
+public class EmailIndex implements UserIndex {
+
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(User user) {
+        if (user.getEmail() != null) {
+            idsByEmail.put(user.getEmail(), user.getId());
+        }
+    }
+
+    @Override
+    public void remove(User user) {
+        if (user.getEmail() != null) {
+            idsByEmail.remove(user.getEmail(), user.getId());
+        }
+    }
+
+    @Override
+    public void update(User previous, User current) {
+        if (!Objects.equals(previous.getEmail(), current.getEmail())) {
+            remove(previous);
+            add(current);
+        }
+    }
+
+    /**
+     * Returns the ID of the user with the given email.
+     *
+     * @param email The email to look up
+     * @return The ID, or null if no indexed user has the email
+     */
+    public Long findId(String email) {
+        return idsByEmail.get(email);
+    }
+}
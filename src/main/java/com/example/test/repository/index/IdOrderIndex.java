@@ -0,0 +1,39 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * All user IDs in ascending order, for keyset pagination.
+ */
+public class IdOrderIndex implements UserIndex {
+
+    private final NavigableSet<Long> sortedIds = new ConcurrentSkipListSet<>();
+
+    @Override
+    public void add(User user) {
+        sortedIds.add(user.getId());
+    }
+
+    @Override
+    public void remove(User user) {
+        sortedIds.remove(user.getId());
+    }
+
+    @Override
+    public void update(User previous, User current) {
+        // IDs never change, so an update leaves the order untouched.
+    }
+
+    /**
+     * Returns the IDs greater than the given one in ascending order.
+     *
+     * @param afterId The exclusive lower bound, or null for all IDs
+     * @return A live view of the matching IDs
+     */
+    public NavigableSet<Long> idsAfter(Long afterId) {
+        return afterId == null ? sortedIds : sortedIds.tailSet(afterId, false);
+    }
+}
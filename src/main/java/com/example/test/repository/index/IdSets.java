@@ -0,0 +1,55 @@
+package com.example.test.repository.index;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maintains a concurrent map from keys to sets of user IDs, dropping a key once its last ID is removed.
+ *
+ * <p>Writes to different users run concurrently, so adding an ID and removing the last other ID of
+ * the same key may race: the removal could drop the set right after the addition looked it up.
+ * Adds and removes for a key are therefore serialized on one of a fixed number of monitors chosen
+ * by the key's hash. Readers use the map directly without locking.</p>
+ *
+ * @param <K> The key type
+ */
+final class IdSets<K> {
+
+    private static final int STRIPES = 64;
+
+    private final ConcurrentMap<K, Set<Long>> idsByKey;
+    private final Object[] stripes = new Object[STRIPES];
+
+    /**
+     * Creates the helper for a map that is otherwise only read.
+     *
+     * @param idsByKey The map to maintain
+     */
+    IdSets(ConcurrentMap<K, Set<Long>> idsByKey) {
+        this.idsByKey = idsByKey;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    void add(K key, long id) {
+        synchronized (stripe(key)) {
+            idsByKey.computeIfAbsent(key, ignored -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    void remove(K key, long id) {
+        synchronized (stripe(key)) {
+            Set<Long> ids = idsByKey.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                idsByKey.remove(key, ids);
+            }
+        }
+    }
+
+    private Object stripe(K key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+}
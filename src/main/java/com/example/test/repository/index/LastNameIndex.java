@@ -0,0 +1,57 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted index from the lower-cased last name to the IDs of users with that last name,
+ * so that a last name prefix is a contiguous range of keys.
+ */
+public class LastNameIndex implements UserIndex {
+
+    private final ConcurrentNavigableMap<String, Set<Long>> idsByLastName = new ConcurrentSkipListMap<>();
+    private final IdSets<String> idSets = new IdSets<>(idsByLastName);
+
+    @Override
+    public void add(User user) {
+        if (user.getLastName() != null) {
+            idSets.add(key(user.getLastName()), user.getId());
+        }
+    }
+
+    @Override
+    public void remove(User user) {
+        if (user.getLastName() != null) {
+            idSets.remove(key(user.getLastName()), user.getId());
+        }
+    }
+
+    @Override
+    public void update(User previous, User current) {
+        if (!Objects.equals(previous.getLastName(), current.getLastName())) {
+            remove(previous);
+            add(current);
+        }
+    }
+
+    /**
+     * Returns the IDs of users whose last name starts with the given prefix.
+     *
+     * @param prefix The prefix, matched case-insensitively
+     * @return The ID sets of every matching last name, in last name order
+     */
+    public Collection<Set<Long>> idsWithPrefix(String prefix) {
+        String from = key(prefix);
+        return idsByLastName.subMap(from, true, from + Character.MAX_VALUE, false).values();
+    }
+
+    private static String key(String lastName) {
+        return lastName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from the tokens of first name, last name, email and address to user IDs.
+ *
+ * <p>Text is lower-cased and split on every character that is not a letter or digit, so
+ * {@code john.doe@example.com} yields {@code john}, {@code doe}, {@code example} and {@code com}.
+ * Terms are kept in a sorted dictionary, which makes a prefix a contiguous range of terms.</p>
+ *
+ * <p>A query matches a user when every query token is a prefix of one of the user's tokens.
+ * Only the most selective query token is resolved through the index; the resulting candidates
+ * are verified and ranked with {@link #score}.</p>
+ */
+public class SearchIndex implements UserIndex {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int NAME_WEIGHT = 3;
+    private static final int EMAIL_WEIGHT = 2;
+    private static final int ADDRESS_WEIGHT = 1;
+
+    private final ConcurrentNavigableMap<String, Set<Long>> idsByTerm = new ConcurrentSkipListMap<>();
+    private final IdSets<String> idSets = new IdSets<>(idsByTerm);
+
+    @Override
+    public void add(User user) {
+        for (String term : terms(user)) {
+            idSets.add(term, user.getId());
+        }
+    }
+
+    @Override
+    public void remove(User user) {
+        for (String term : terms(user)) {
+            idSets.remove(term, user.getId());
+        }
+    }
+
+    @Override
+    public void update(User previous, User current) {
+        if (!Objects.equals(previous.getFirstName(), current.getFirstName())
+                || !Objects.equals(previous.getLastName(), current.getLastName())
+                || !Objects.equals(previous.getEmail(), current.getEmail())
+                || !Objects.equals(previous.getAddress(), current.getAddress())) {
+            remove(previous);
+            add(current);
+        }
+    }
+
+    /**
+     * Returns the IDs of users with a token starting with the most selective of the query tokens.
+     *
+     * @param queryTokens The tokens of the query, see {@link #tokenize}
+     * @return Candidate IDs that still have to be verified with {@link #score}
+     */
+    public Collection<Long> candidates(List<String> queryTokens) {
+        NavigableMap<String, Set<Long>> best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (String token : queryTokens) {
+            NavigableMap<String, Set<Long>> terms = withPrefix(token);
+            long size = 0;
+            for (Set<Long> ids : terms.values()) {
+                size += ids.size();
+                if (size >= bestSize) {
+                    break;
+                }
+            }
+            if (size < bestSize) {
+                best = terms;
+                bestSize = size;
+            }
+        }
+        if (best == null) {
+            return List.of();
+        }
+        Set<Long> candidates = new HashSet<>((int) Math.min(bestSize * 2, Integer.MAX_VALUE / 2));
+        for (Set<Long> ids : best.values()) {
+            candidates.addAll(ids);
+        }
+        return candidates;
+    }
+
+    /**
+     * Scores how well a {@link User} matches a query.
+     *
+     * <p>Every query token contributes the best of its matches, weighted by field (names over
+     * email over address) and doubled when it matches a whole token rather than a prefix.</p>
+     *
+     * @param user        The {@link User} to score
+     * @param queryTokens The tokens of the query, see {@link #tokenize}
+     * @return The score, or 0 if some query token matches no token of the user
+     */
+    public static int score(User user, List<String> queryTokens) {
+        List<String> firstName = tokenize(user.getFirstName());
+        List<String> lastName = tokenize(user.getLastName());
+        List<String> email = tokenize(user.getEmail());
+        List<String> address = tokenize(user.getAddress());
+        int score = 0;
+        for (String token : queryTokens) {
+            int best = Math.max(Math.max(match(token, firstName, NAME_WEIGHT), match(token, lastName, NAME_WEIGHT)),
+                    Math.max(match(token, email, EMAIL_WEIGHT), match(token, address, ADDRESS_WEIGHT)));
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    /**
+     * Splits text into lower-case tokens of letters and digits.
+     *
+     * @param text The text to split, may be null
+     * @return The tokens in order of appearance
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private NavigableMap<String, Set<Long>> withPrefix(String prefix) {
+        return idsByTerm.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static int match(String token, List<String> fieldTokens, int weight) {
+        int best = 0;
+        for (String fieldToken : fieldTokens) {
+            if (fieldToken.equals(token)) {
+                return 2 * weight;
+            }
+            if (fieldToken.startsWith(token)) {
+                best = weight;
+            }
+        }
+        return best;
+    }
+
+    private static Set<String> terms(User user) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.addAll(tokenize(user.getFirstName()));
+        terms.addAll(tokenize(user.getLastName()));
+        terms.addAll(tokenize(user.getEmail()));
+        terms.addAll(tokenize(user.getAddress()));
+        return terms;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.test.repository.index;
+
+import com.example.test.model.User;
+
+/**
+ * Secondary index over stored users, maintained by the repository on every write.
+ *
+ * <p>Entries an index holds are always accurate, but while the repository is still building its
+ * indexes after startup an index may not yet hold every user; callers fall back to a scan until
+ * the repository reports its indexes as ready.</p>
+ */
+public interface UserIndex {
+
+    /**
+     * Adds the entries of a stored {@link User}. Adding the same user twice has no further effect.
+     *
+     * @param user The stored {@link User}
+     */
+    void add(User user);
+
+    /**
+     * Removes the entries of a {@link User}, leaving entries that belong to other users untouched.
+     *
+     * @param user The {@link User} as it was stored
+     */
+    void remove(User user);
+
+    /**
+     * Moves the entries of a {@link User} from its previous to its current state.
+     *
+     * @param previous The {@link User} as it was stored before the write
+     * @param current  The {@link User} as it is stored after the write
+     */
+    default void update(User previous, User current) {
+        remove(previous);
+        add(current);
+    }
+}
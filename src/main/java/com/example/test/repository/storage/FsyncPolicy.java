@@ -0,0 +1,22 @@
+package com.example.test.repository.storage;
+
+/**
+ * Controls when the {@link UserJournal} forces appended records to disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every group commit is forced and writers wait for it before returning.
+     */
+    ALWAYS,
+
+    /**
+     * Writers return as soon as their record is queued; the journal is forced at a fixed interval.
+     */
+    INTERVAL,
+
+    /**
+     * The journal is never forced explicitly and flushing is left to the operating system.
+     */
+    NEVER
+}
@@ -0,0 +1,50 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * {@link UserRecordStore} keeping {@link User} objects in a {@link ConcurrentHashMap}.
+ */
+public class HeapUserRecordStore implements UserRecordStore {
+
+    private final Map<Long, User> usersById = new ConcurrentHashMap<>();
+
+    @Override
+    public User get(long id) {
+        return usersById.get(id);
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return usersById.containsKey(id);
+    }
+
+    @Override
+    public User put(User user) {
+        return usersById.put(user.getId(), user);
+    }
+
+    @Override
+    public boolean replace(User expected, User updated) {
+        return usersById.replace(expected.getId(), expected, updated);
+    }
+
+    @Override
+    public User remove(long id) {
+        return usersById.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return usersById.size();
+    }
+
+    @Override
+    public Stream<User> stream() {
+        return usersById.values().stream();
+    }
+}
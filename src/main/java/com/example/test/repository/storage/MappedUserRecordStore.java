@@ -0,0 +1,377 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link UserRecordStore} keeping records in a memory-mapped file instead of on the Java heap.
+ *
+ * <p>The file is a 64-byte header followed by append-only records. Each record has a fixed
+ * 56-byte header ({@code int length}, {@code int flags}, {@code long id}, {@code long epochDay},
+ * five {@code int} string lengths, padding and the {@code long} version) followed by a string
+ * arena with the UTF-8 bytes of the email, first name, last name, address and phone number.
+ * Records never span the 64 MB segments the file is mapped in; the unused tail of a segment is
+ * marked with a zero length. Files written before users were versioned have 48-byte record
+ * headers without the version and keep that layout.</p>
+ *
+ * <p>An update appends a new record and marks the old one dead, and a delete marks it dead.
+ * The ID to offset index lives in an {@link OffHeapLongMap}. On startup the index is rebuilt
+ * by reading only the fixed record headers, so an existing file is reused without decoding
+ * any strings. {@link User} objects are created only when a record is read.</p>
+ */
+@Slf4j
+public class MappedUserRecordStore implements UserRecordStore, Closeable {
+
+    private static final int MAGIC = 0x5553524D;
+    private static final int UNVERSIONED_USERS_VERSION = 1;
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_BYTES = 64;
+    private static final int WRITE_OFFSET_POSITION = 8;
+    private static final int UNVERSIONED_RECORD_HEADER_BYTES = 48;
+    private static final int RECORD_HEADER_BYTES = 56;
+    private static final int USER_VERSION_POSITION = 48;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final int LIVE = 1;
+    private static final int DEAD = 0;
+    private static final int STRING_FIELDS = 5;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final OffHeapLongMap offsetsById;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int recordHeaderBytes;
+    private long writeOffset;
+
+    /**
+     * Opens or creates the store file and rebuilds the ID index from the record headers.
+     *
+     * @param file         The store file
+     * @param expectedSize The expected number of users, used to size the index
+     * @throws IOException if the file cannot be opened or is not a store file
+     */
+    public MappedUserRecordStore(Path file, int expectedSize) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.offsetsById = new OffHeapLongMap(expectedSize);
+
+        boolean created = channel.size() == 0;
+        MappedByteBuffer first = segment(0);
+        if (created) {
+            first.putInt(0, MAGIC);
+            first.putInt(4, VERSION);
+            first.putLong(WRITE_OFFSET_POSITION, FILE_HEADER_BYTES);
+        } else if (first.getInt(0) != MAGIC
+                || (first.getInt(4) != VERSION && first.getInt(4) != UNVERSIONED_USERS_VERSION)) {
+            channel.close();
+            throw new IOException("Not a user store file: " + file);
+        }
+        this.recordHeaderBytes = first.getInt(4) == VERSION ? RECORD_HEADER_BYTES : UNVERSIONED_RECORD_HEADER_BYTES;
+        if (recordHeaderBytes == UNVERSIONED_RECORD_HEADER_BYTES) {
+            log.warn("User store {} predates user versions; recreate it to keep versions across restarts", file);
+        }
+        this.writeOffset = first.getLong(WRITE_OFFSET_POSITION);
+        rebuildIndex();
+        log.info("Opened mapped user store {} with {} users", file, offsetsById.size());
+    }
+
+    @Override
+    public User get(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = offsetsById.get(id);
+            return offset == OffHeapLongMap.MISSING ? null : read(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return offsetsById.get(id) != OffHeapLongMap.MISSING;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User put(User user) {
+        byte[][] strings = {
+                bytes(user.getEmail()), bytes(user.getFirstName()), bytes(user.getLastName()),
+                bytes(user.getAddress()), bytes(user.getPhoneNumber())
+        };
+        int length = recordHeaderBytes;
+        for (byte[] string : strings) {
+            length += string == null ? 0 : string.length;
+        }
+        length = (length + 7) & ~7;
+        if (length > SEGMENT_BYTES) {
+            throw new IllegalArgumentException("User record is too large");
+        }
+
+        lock.writeLock().lock();
+        try {
+            long offset = allocate(length);
+            MappedByteBuffer segment = segment(segmentIndex(offset));
+            int position = segmentPosition(offset);
+            segment.putInt(position + 4, LIVE);
+            segment.putLong(position + 8, user.getId());
+            segment.putLong(position + 16, user.getBirthDate() == null ? NO_DATE : user.getBirthDate().toEpochDay());
+            if (recordHeaderBytes == RECORD_HEADER_BYTES) {
+                segment.putLong(position + USER_VERSION_POSITION, user.getVersion());
+            }
+            int stringPosition = position + recordHeaderBytes;
+            for (int i = 0; i < STRING_FIELDS; i++) {
+                byte[] string = strings[i];
+                segment.putInt(position + 24 + i * 4, string == null ? -1 : string.length);
+                if (string != null) {
+                    segment.put(stringPosition, string);
+                    stringPosition += string.length;
+                }
+            }
+            segment.putInt(position, length);
+            setWriteOffset(offset + length);
+
+            long previousOffset = offsetsById.get(user.getId());
+            User previous = null;
+            if (previousOffset != OffHeapLongMap.MISSING) {
+                previous = read(previousOffset);
+                markDead(previousOffset);
+            }
+            offsetsById.put(user.getId(), offset);
+            return previous;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to grow mapped user store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Records are copied on every read, so the stored record is compared with {@code expected}
+     * by version. Files without versions compare every record as the initial version.</p>
+     */
+    @Override
+    public boolean replace(User expected, User updated) {
+        lock.writeLock().lock();
+        try {
+            long offset = offsetsById.get(expected.getId());
+            if (offset == OffHeapLongMap.MISSING || version(offset) != expected.getVersion()) {
+                return false;
+            }
+            put(updated);
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public User remove(long id) {
+        lock.writeLock().lock();
+        try {
+            long offset = offsetsById.remove(id);
+            if (offset == OffHeapLongMap.MISSING) {
+                return null;
+            }
+            User removed = read(offset);
+            markDead(offset);
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return offsetsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the live records in file order, which reads the mapped file sequentially.
+     *
+     * @return Stream of users
+     */
+    @Override
+    public Stream<User> stream() {
+        Spliterator<User> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.NONNULL) {
+            private long offset = FILE_HEADER_BYTES;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super User> action) {
+                lock.readLock().lock();
+                User next = null;
+                try {
+                    while (next == null && offset < writeOffset) {
+                        MappedByteBuffer segment = segment(segmentIndex(offset));
+                        int position = segmentPosition(offset);
+                        int length = position + recordHeaderBytes <= SEGMENT_BYTES ? segment.getInt(position) : 0;
+                        if (length == 0) {
+                            offset = (segmentIndex(offset) + 1L) << SEGMENT_SHIFT;
+                            continue;
+                        }
+                        if (segment.getInt(position + 4) == LIVE) {
+                            next = read(offset);
+                        }
+                        offset += length;
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (next == null) {
+                    return false;
+                }
+                action.accept(next);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Forces the mapped segments to disk and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        long offset = FILE_HEADER_BYTES;
+        while (offset < writeOffset) {
+            MappedByteBuffer segment = segment(segmentIndex(offset));
+            int position = segmentPosition(offset);
+            int length = position + recordHeaderBytes <= SEGMENT_BYTES ? segment.getInt(position) : 0;
+            if (length == 0) {
+                offset = (segmentIndex(offset) + 1L) << SEGMENT_SHIFT;
+                continue;
+            }
+            if (segment.getInt(position + 4) == LIVE) {
+                offsetsById.put(segment.getLong(position + 8), offset);
+            }
+            offset += length;
+        }
+    }
+
+    private long allocate(int length) throws IOException {
+        long offset = writeOffset;
+        if (segmentPosition(offset) + (long) length > SEGMENT_BYTES) {
+            if (segmentPosition(offset) + recordHeaderBytes <= SEGMENT_BYTES) {
+                segment(segmentIndex(offset)).putInt(segmentPosition(offset), 0);
+            }
+            offset = (segmentIndex(offset) + 1L) << SEGMENT_SHIFT;
+        }
+        segment(segmentIndex(offset));
+        return offset;
+    }
+
+    private void setWriteOffset(long offset) throws IOException {
+        writeOffset = offset;
+        segment(0).putLong(WRITE_OFFSET_POSITION, offset);
+    }
+
+    private void markDead(long offset) {
+        try {
+            segment(segmentIndex(offset)).putInt(segmentPosition(offset) + 4, DEAD);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long version(long offset) throws IOException {
+        if (recordHeaderBytes != RECORD_HEADER_BYTES) {
+            return 0L;
+        }
+        return segment(segmentIndex(offset)).getLong(segmentPosition(offset) + USER_VERSION_POSITION);
+    }
+
+    private User read(long offset) {
+        try {
+            MappedByteBuffer segment = segment(segmentIndex(offset));
+            int position = segmentPosition(offset);
+            long epochDay = segment.getLong(position + 16);
+            String[] strings = new String[STRING_FIELDS];
+            int stringPosition = position + recordHeaderBytes;
+            for (int i = 0; i < STRING_FIELDS; i++) {
+                int length = segment.getInt(position + 24 + i * 4);
+                if (length >= 0) {
+                    byte[] bytes = new byte[length];
+                    segment.get(stringPosition, bytes);
+                    strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                    stringPosition += length;
+                }
+            }
+            return new User(segment.getLong(position + 8), strings[0], strings[1], strings[2],
+                    epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay), strings[3], strings[4], version(offset));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the mapping of a segment, mapping it (and growing the file) on first use.
+     * Segments are only added under the write lock or in the constructor.
+     */
+    private MappedByteBuffer segment(int index) throws IOException {
+        while (segments.size() <= index) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * SEGMENT_BYTES, SEGMENT_BYTES));
+        }
+        return segments.get(index);
+    }
+
+    private static int segmentIndex(long offset) {
+        return (int) (offset >>> SEGMENT_SHIFT);
+    }
+
+    private static int segmentPosition(long offset) {
+        return (int) (offset & (SEGMENT_BYTES - 1));
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.test.repository.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open-addressing hash map from {@code long} keys to {@code long} values stored in direct buffers.
+ *
+ * <p>Entries live outside the Java heap, so millions of them add no objects for the garbage
+ * collector to trace. Buffers are indexed by {@code int} byte offsets, so large tables are split
+ * over buffers of 2^26 slots (1 GiB) each. The map is not thread-safe; callers must guard it.</p>
+ */
+public final class OffHeapLongMap {
+
+    public static final long MISSING = -1L;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long TOMBSTONE = Long.MIN_VALUE + 1;
+    private static final int ENTRY_BYTES = 16;
+    private static final double MAX_LOAD = 0.6;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int DEFAULT_SEGMENT_SHIFT = 26;
+
+    private final int segmentShift;
+    private final int segmentMask;
+    private ByteBuffer[] segments;
+    private int capacity;
+    private int size;
+    private int used;
+
+    public OffHeapLongMap(int expectedSize) {
+        this(expectedSize, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * Creates a map whose buffers hold {@code 2^segmentShift} slots each.
+     */
+    OffHeapLongMap(int expectedSize, int segmentShift) {
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public long get(long key) {
+        int slot = find(key);
+        return slot < 0 ? MISSING : valueAt(slot);
+    }
+
+    public void put(long key, long value) {
+        if (key == EMPTY || key == TOMBSTONE) {
+            throw new IllegalArgumentException("Unsupported key: " + key);
+        }
+        if (used + 1 > capacity * MAX_LOAD) {
+            rehash(size + 1 > capacity * MAX_LOAD / 2 ? grow(capacity) : capacity);
+        }
+        int mask = capacity - 1;
+        int firstTombstone = -1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = keyAt(slot);
+            if (current == key) {
+                setValue(slot, value);
+                return;
+            }
+            if (current == TOMBSTONE && firstTombstone < 0) {
+                firstTombstone = slot;
+            } else if (current == EMPTY) {
+                int target = firstTombstone >= 0 ? firstTombstone : slot;
+                if (target == slot) {
+                    used++;
+                }
+                setKey(target, key);
+                setValue(target, value);
+                size++;
+                return;
+            }
+        }
+    }
+
+    public long remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return MISSING;
+        }
+        long value = valueAt(slot);
+        setKey(slot, TOMBSTONE);
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int find(long key) {
+        int mask = capacity - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = keyAt(slot);
+            if (current == key) {
+                return slot;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private long keyAt(int slot) {
+        return segments[slot >>> segmentShift].getLong((slot & segmentMask) * ENTRY_BYTES);
+    }
+
+    private long valueAt(int slot) {
+        return segments[slot >>> segmentShift].getLong((slot & segmentMask) * ENTRY_BYTES + 8);
+    }
+
+    private void setKey(int slot, long key) {
+        segments[slot >>> segmentShift].putLong((slot & segmentMask) * ENTRY_BYTES, key);
+    }
+
+    private void setValue(int slot, long value) {
+        segments[slot >>> segmentShift].putLong((slot & segmentMask) * ENTRY_BYTES + 8, value);
+    }
+
+    private void rehash(int newCapacity) {
+        ByteBuffer[] oldSegments = segments;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer segment = oldSegments[slot >>> segmentShift];
+            int offset = (slot & segmentMask) * ENTRY_BYTES;
+            long key = segment.getLong(offset);
+            if (key != EMPTY && key != TOMBSTONE) {
+                put(key, segment.getLong(offset + 8));
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        int segmentSlots = Math.min(newCapacity, 1 << segmentShift);
+        ByteBuffer[] newSegments = new ByteBuffer[newCapacity / segmentSlots];
+        for (int i = 0; i < newSegments.length; i++) {
+            newSegments[i] = ByteBuffer.allocateDirect(segmentSlots * ENTRY_BYTES);
+            for (int slot = 0; slot < segmentSlots; slot++) {
+                newSegments[i].putLong(slot * ENTRY_BYTES, EMPTY);
+            }
+        }
+        segments = newSegments;
+        capacity = newCapacity;
+        size = 0;
+        used = 0;
+    }
+
+    private static int grow(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Map cannot hold more than " + (int) (MAX_CAPACITY * MAX_LOAD) + " entries");
+        }
+        return capacity * 2;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity = grow(capacity);
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
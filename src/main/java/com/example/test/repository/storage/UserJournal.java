@@ -0,0 +1,510 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, checksummed log of {@link User} writes with group commit.
+ *
+ * <p>Each record is {@code int payload length}, {@code int CRC32 of payload} and the payload:
+ * an operation byte followed by the full {@link User} for puts or the ID for deletes. Puts
+ * journaled before users were versioned use their own operation byte and replay at the initial version.
+ * Writers only copy their record into an in-memory buffer; a single flusher thread writes
+ * whatever has accumulated with one {@link FileChannel#write} and, depending on the
+ * {@link FsyncPolicy}, one {@link FileChannel#force}, so concurrent writers share disk syncs.</p>
+ *
+ * <p>The log is split into generations, one file per generation. {@link #rotate()} starts a new
+ * generation so that older ones can be dropped once a snapshot covers them.</p>
+ */
+@Slf4j
+public class UserJournal implements Closeable {
+
+    static final String FILE_PREFIX = "journal-";
+    static final String FILE_SUFFIX = ".log";
+
+    private static final byte UNVERSIONED_PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte PUT = 3;
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    private static final int MAX_PENDING_BYTES = 16 << 20;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private ByteArrayOutputStream spare = new ByteArrayOutputStream(64 * 1024);
+    private long appendedSequence;
+    private long writtenSequence;
+    private long durableSequence;
+    private long appendedSinceRotation;
+    private boolean forceRequested;
+    private boolean closed;
+    private IOException failure;
+    private long lastForceNanos = System.nanoTime();
+
+    private FileChannel channel;
+    private long generation;
+    private Thread flusher;
+
+    /**
+     * Creates a journal in the given directory. Nothing is opened until {@link #start(long)}.
+     *
+     * @param directory       The directory holding the journal files
+     * @param fsyncPolicy     When appended records are forced to disk
+     * @param fsyncIntervalMs The force interval used by {@link FsyncPolicy#INTERVAL}
+     */
+    public UserJournal(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMs));
+    }
+
+    /**
+     * Opens the given generation for appending and starts the flusher thread.
+     *
+     * @param generation The generation to append to
+     * @throws IOException if the journal file cannot be opened
+     */
+    public void start(long generation) throws IOException {
+        this.channel = openGeneration(generation);
+        this.generation = generation;
+        this.flusher = new Thread(this::runFlusher, "user-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends the full state of a {@link User}.
+     *
+     * @param user The {@link User} after the write
+     * @return The sequence number of the record
+     */
+    public long appendPut(User user) {
+        return append(encode(out -> {
+            out.writeByte(PUT);
+            UserRecordCodec.write(out, user);
+        }));
+    }
+
+    /**
+     * Appends the deletion of a {@link User}.
+     *
+     * @param id The ID of the deleted {@link User}
+     * @return The sequence number of the record
+     */
+    public long appendDelete(long id) {
+        return append(encode(out -> {
+            out.writeByte(DELETE);
+            out.writeLong(id);
+        }));
+    }
+
+    /**
+     * Returns the sequence number of the last appended record.
+     *
+     * @return The last sequence number
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records appended since the current generation was started.
+     *
+     * @return The number of records in the current generation
+     */
+    public long appendedSinceRotation() {
+        lock.lock();
+        try {
+            return appendedSinceRotation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record is committed according to the {@link FsyncPolicy}.
+     *
+     * <p>Only {@link FsyncPolicy#ALWAYS} waits; the other policies acknowledge writes as soon
+     * as they are queued.</p>
+     *
+     * @param sequence The sequence number returned by an append
+     */
+    public void awaitCommit(long sequence) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Waits until the record has been forced to disk, regardless of the {@link FsyncPolicy}.
+     *
+     * @param sequence The sequence number returned by an append
+     * @throws UncheckedIOException if the journal failed to write
+     */
+    public void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                throwIfFailed();
+                if (closed) {
+                    throw new IllegalStateException("Journal is closed");
+                }
+                forceRequested = true;
+                workAvailable.signal();
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces everything appended so far and switches to a new generation.
+     *
+     * <p>Callers must make sure no appends happen concurrently, so that the old generation
+     * contains exactly the writes made before the rotation.</p>
+     *
+     * @return The new generation
+     * @throws IOException if the old generation cannot be flushed or the new one opened
+     */
+    public long rotate() throws IOException {
+        ioLock.lock();
+        try {
+            flush(true);
+            channel.close();
+            generation++;
+            channel = openGeneration(generation);
+            lock.lock();
+            try {
+                appendedSinceRotation = 0;
+            } finally {
+                lock.unlock();
+            }
+            return generation;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes and forces all pending records, stops the flusher and closes the current file.
+     *
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            ioLock.lock();
+            try {
+                flush(true);
+                channel.close();
+            } finally {
+                ioLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays the records of one journal file in order.
+     *
+     * <p>Reading stops at the first truncated or corrupt record, which is what a crash in the
+     * middle of a write leaves behind. When {@code truncate} is set the file is cut back to the
+     * last intact record so that nothing is ever appended after garbage.</p>
+     *
+     * @param file     The journal file
+     * @param put      Receives every stored {@link User}
+     * @param delete   Receives every deleted ID
+     * @param truncate Whether to truncate a damaged tail
+     * @return The number of replayed records
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, Consumer<User> put, LongConsumer delete, boolean truncate) throws IOException {
+        long records = 0;
+        long validBytes = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte op = record.readByte();
+                if (op == PUT) {
+                    put.accept(UserRecordCodec.read(record));
+                } else if (op == UNVERSIONED_PUT) {
+                    put.accept(UserRecordCodec.readUnversioned(record));
+                } else if (op == DELETE) {
+                    delete.accept(record.readLong());
+                } else {
+                    break;
+                }
+                records++;
+                validBytes += Integer.BYTES * 2 + length;
+            }
+        }
+        long size = Files.size(file);
+        if (validBytes < size) {
+            log.warn("Journal {} has {} damaged trailing bytes after {} records", file, size - validBytes, records);
+            if (truncate) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                    channel.force(true);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Lists the generation files with the given prefix and suffix in a directory.
+     *
+     * @param directory The directory to scan
+     * @param prefix    The file name prefix
+     * @param suffix    The file name suffix
+     * @return The files keyed by generation, in ascending order
+     * @throws IOException if the directory cannot be listed
+     */
+    static NavigableMap<Long, Path> generations(Path directory, String prefix, String suffix) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+        return files;
+    }
+
+    static String fileName(String prefix, long generation, String suffix) {
+        return String.format("%s%020d%s", prefix, generation, suffix);
+    }
+
+    private FileChannel openGeneration(long generation) throws IOException {
+        Files.createDirectories(directory);
+        return FileChannel.open(directory.resolve(fileName(FILE_PREFIX, generation, FILE_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private long append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        lock.lock();
+        try {
+            while (pending.size() >= MAX_PENDING_BYTES && failure == null && !closed) {
+                spaceAvailable.awaitUninterruptibly();
+            }
+            throwIfFailed();
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            writeInt(pending, payload.length);
+            writeInt(pending, (int) crc.getValue());
+            pending.write(payload, 0, payload.length);
+            appendedSinceRotation++;
+            long sequence = ++appendedSequence;
+            workAvailable.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && failure == null && pending.size() == 0 && !forceRequested && !intervalForceDue()) {
+                    workAvailable.awaitNanos(fsyncIntervalNanos);
+                }
+                if (closed || failure != null) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            ioLock.lock();
+            try {
+                flush(false);
+            } catch (IOException e) {
+                log.error("Failed to write user journal", e);
+                lock.lock();
+                try {
+                    failure = e;
+                    committed.signalAll();
+                    spaceAvailable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            } finally {
+                ioLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending buffer and forces it if required. Must be called with {@link #ioLock} held.
+     */
+    private void flush(boolean force) throws IOException {
+        ByteArrayOutputStream batch;
+        long target;
+        boolean doForce;
+        lock.lock();
+        try {
+            batch = pending;
+            pending = spare;
+            spare = batch;
+            target = appendedSequence;
+            doForce = force || forceRequested || fsyncPolicy == FsyncPolicy.ALWAYS
+                    || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastForceNanos >= fsyncIntervalNanos);
+            forceRequested = false;
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        batch.reset();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (doForce && target > durableSequenceSnapshot()) {
+            channel.force(false);
+        }
+
+        lock.lock();
+        try {
+            writtenSequence = target;
+            if (doForce) {
+                durableSequence = target;
+                lastForceNanos = System.nanoTime();
+            }
+            committed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long durableSequenceSnapshot() {
+        lock.lock();
+        try {
+            return durableSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean intervalForceDue() {
+        return fsyncPolicy == FsyncPolicy.INTERVAL && writtenSequence > durableSequence
+                && System.nanoTime() - lastForceNanos >= fsyncIntervalNanos;
+    }
+
+    private void throwIfFailed() {
+        if (failure != null) {
+            throw new UncheckedIOException("User journal is unavailable", failure);
+        }
+    }
+
+    private static byte[] encode(RecordWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            writer.write(new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Compact binary encoding of {@link User} records shared by the journal and snapshot files.
+ *
+ * <p>Layout: {@code long id}, {@code long birthDate epoch day} ({@link Long#MIN_VALUE} for null),
+ * followed by email, first name, last name, address and phone number, each as an {@code int}
+ * UTF-8 byte length ({@code -1} for null) and the bytes, and finally the {@code long} version.
+ * Records written before users were versioned lack the version and are read with
+ * {@link #readUnversioned}.</p>
+ */
+public final class UserRecordCodec {
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private UserRecordCodec() {
+    }
+
+    /**
+     * Writes a {@link User}.
+     *
+     * @param out  The output to write to
+     * @param user The {@link User} to write; its ID must not be null
+     * @throws IOException if writing fails
+     */
+    public static void write(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        out.writeLong(user.getBirthDate() == null ? NO_DATE : user.getBirthDate().toEpochDay());
+        writeString(out, user.getEmail());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+        writeString(out, user.getAddress());
+        writeString(out, user.getPhoneNumber());
+        out.writeLong(user.getVersion());
+    }
+
+    /**
+     * Reads a {@link User} written by {@link #write}.
+     *
+     * @param in The input to read from
+     * @return The read {@link User}
+     * @throws IOException if reading fails
+     */
+    public static User read(DataInput in) throws IOException {
+        return readUnversioned(in).withVersion(in.readLong());
+    }
+
+    /**
+     * Reads a {@link User} record that was written without a version, giving it the initial version.
+     *
+     * @param in The input to read from
+     * @return The read {@link User}
+     * @throws IOException if reading fails
+     */
+    public static User readUnversioned(DataInput in) throws IOException {
+        long id = in.readLong();
+        long epochDay = in.readLong();
+        return new User(id, readString(in), readString(in), readString(in),
+                epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay), readString(in), readString(in));
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+
+import java.util.stream.Stream;
+
+/**
+ * Primary storage of {@link User} records keyed by ID, underneath the repository's indexes.
+ *
+ * <p>Implementations must be safe for concurrent reads. Writes are serialized by the
+ * repository, but may run concurrently with reads.</p>
+ */
+public interface UserRecordStore {
+
+    /**
+     * Returns the {@link User} with the given ID.
+     *
+     * @param id The ID to look up
+     * @return The {@link User}, or null if there is none
+     */
+    User get(long id);
+
+    /**
+     * Checks whether a {@link User} with the given ID is stored.
+     *
+     * @param id The ID to check
+     * @return True if the ID is stored, otherwise false
+     */
+    boolean contains(long id);
+
+    /**
+     * Stores a {@link User}, replacing any record with the same ID.
+     *
+     * @param user The {@link User} to store; its ID must not be null
+     * @return The replaced {@link User}, or null if there was none
+     */
+    User put(User user);
+
+    /**
+     * Atomically replaces a stored {@link User} with a new version of it, provided the stored record
+     * is still the one that was read as {@code expected}.
+     *
+     * @param expected The {@link User} as it was read from this store
+     * @param updated  The replacement with the same ID
+     * @return True if the record was replaced, false if it changed or was removed in the meantime
+     */
+    boolean replace(User expected, User updated);
+
+    /**
+     * Removes the {@link User} with the given ID.
+     *
+     * @param id The ID to remove
+     * @return The removed {@link User}, or null if there was none
+     */
+    User remove(long id);
+
+    /**
+     * Returns the number of stored users.
+     *
+     * @return The number of users
+     */
+    int size();
+
+    /**
+     * Streams all stored users. The stream is weakly consistent with concurrent writes.
+     *
+     * @return Stream of users
+     */
+    Stream<User> stream();
+}
@@ -0,0 +1,277 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Compact snapshot files of the whole user store.
+ *
+ * <p>A snapshot is written to a temporary file, forced and then atomically renamed, so a crash
+ * never leaves a partially written snapshot under its final name. Records are grouped into
+ * chunks, each with its own record count, byte length and CRC32, and the file ends with the total
+ * record count. Chunks are independent, so {@link #loadLatest} verifies and decodes them in
+ * parallel. Snapshots of earlier format versions, written before users were versioned, remain
+ * readable.</p>
+ */
+@Slf4j
+public final class UserSnapshots {
+
+    static final String FILE_PREFIX = "snapshot-";
+    static final String FILE_SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x55534E50;
+    private static final int LEGACY_VERSION = 1;
+    private static final int UNVERSIONED_USERS_VERSION = 2;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+    private static final int CHUNK_HEADER_BYTES = 12;
+    private static final int END_OF_CHUNKS = -1;
+    private static final int CHUNK_RECORDS = 8192;
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    private static final int MAX_CHUNK_BYTES = Integer.MAX_VALUE - 64;
+
+    private UserSnapshots() {
+    }
+
+    /**
+     * Writes a snapshot for the given generation.
+     *
+     * @param directory  The directory holding the snapshot files
+     * @param generation The first journal generation not covered by the snapshot
+     * @param users      The users to write
+     * @return The number of written users
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static long write(Path directory, long generation, Iterator<User> users) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(UserJournal.fileName(FILE_PREFIX, generation, FILE_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        long count = 0;
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(1 << 20);
+        DataOutputStream chunkOut = new DataOutputStream(chunk);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int chunkRecords = 0;
+            while (users.hasNext()) {
+                record.reset();
+                UserRecordCodec.write(recordOut, users.next());
+                chunkOut.writeInt(record.size());
+                record.writeTo(chunkOut);
+                chunkRecords++;
+                count++;
+                if (chunkRecords == CHUNK_RECORDS) {
+                    writeChunk(out, chunk, chunkRecords);
+                    chunkRecords = 0;
+                }
+            }
+            if (chunkRecords > 0) {
+                writeChunk(out, chunk, chunkRecords);
+            }
+            out.writeInt(END_OF_CHUNKS);
+            out.writeLong(count);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Loads the newest intact snapshot, skipping any that fail verification.
+     *
+     * <p>All chunks are verified before any user is handed to {@code put}, so a damaged snapshot
+     * never leaves partial state behind. {@code put} is called concurrently from several threads.</p>
+     *
+     * @param directory The directory holding the snapshot files
+     * @param put       Receives every user of the loaded snapshot; must be thread-safe
+     * @return The generation of the loaded snapshot, or empty if there is none
+     * @throws IOException if the directory cannot be read
+     */
+    public static OptionalLong loadLatest(Path directory, Consumer<User> put) throws IOException {
+        NavigableMap<Long, Path> snapshots = UserJournal.generations(directory, FILE_PREFIX, FILE_SUFFIX);
+        for (Map.Entry<Long, Path> snapshot : snapshots.descendingMap().entrySet()) {
+            if (load(snapshot.getValue(), put)) {
+                return OptionalLong.of(snapshot.getKey());
+            }
+            log.warn("Ignoring damaged snapshot {}", snapshot.getValue());
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Deletes snapshots older than the given generation.
+     *
+     * @param directory  The directory holding the snapshot files
+     * @param generation The oldest generation to keep
+     * @throws IOException if a file cannot be deleted
+     */
+    public static void deleteBefore(Path directory, long generation) throws IOException {
+        for (Path file : UserJournal.generations(directory, FILE_PREFIX, FILE_SUFFIX).headMap(generation).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, ByteArrayOutputStream chunk, int records) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] bytes = chunk.toByteArray();
+        crc.update(bytes);
+        out.writeInt(records);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+        chunk.reset();
+    }
+
+    private static boolean load(Path file, Consumer<User> put) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                return false;
+            }
+            int version = header.getInt();
+            if (version == LEGACY_VERSION) {
+                return loadLegacy(file, put);
+            }
+            if (version != VERSION && version != UNVERSIONED_USERS_VERSION) {
+                return false;
+            }
+            boolean versionedUsers = version == VERSION;
+
+            List<Chunk> chunks = readChunkHeaders(channel);
+            if (chunks == null) {
+                return false;
+            }
+            boolean intact = chunks.parallelStream().allMatch(chunk -> chunk.verify(channel));
+            if (!intact) {
+                return false;
+            }
+            chunks.parallelStream().forEach(chunk -> chunk.decode(channel, versionedUsers, put));
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the chunk headers, returning null if the chunk layout or the total count is inconsistent.
+     */
+    private static List<Chunk> readChunkHeaders(FileChannel channel) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long position = HEADER_BYTES;
+        long records = 0;
+        while (true) {
+            ByteBuffer header = readFully(channel, position, Integer.BYTES);
+            int count = header.getInt();
+            if (count == END_OF_CHUNKS) {
+                long total = readFully(channel, position + Integer.BYTES, Long.BYTES).getLong();
+                return total == records ? chunks : null;
+            }
+            header = readFully(channel, position, CHUNK_HEADER_BYTES);
+            header.getInt();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (count <= 0 || length <= 0 || length > MAX_CHUNK_BYTES) {
+                return null;
+            }
+            chunks.add(new Chunk(position + CHUNK_HEADER_BYTES, count, length, crc));
+            records += count;
+            position += CHUNK_HEADER_BYTES + (long) length;
+        }
+    }
+
+    private static boolean loadLegacy(Path file, Consumer<User> put) throws IOException {
+        return readLegacy(file, null) && readLegacy(file, put);
+    }
+
+    private static boolean readLegacy(Path file, Consumer<User> put) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            in.skipNBytes(HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            long count = 0;
+            int length;
+            while ((length = in.readInt()) != END_OF_CHUNKS) {
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    return false;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.update(bytes);
+                if (put != null) {
+                    put.accept(UserRecordCodec.readUnversioned(new DataInputStream(new ByteArrayInputStream(bytes))));
+                }
+                count++;
+            }
+            return in.readLong() == count && in.readInt() == (int) crc.getValue();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private record Chunk(long position, int records, int length, int crc) {
+
+        boolean verify(FileChannel channel) {
+            CRC32 checksum = new CRC32();
+            checksum.update(read(channel));
+            return (int) checksum.getValue() == crc;
+        }
+
+        void decode(FileChannel channel, boolean versionedUsers, Consumer<User> put) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(channel).array()));
+            try {
+                for (int i = 0; i < records; i++) {
+                    in.readInt();
+                    put.accept(versionedUsers ? UserRecordCodec.read(in) : UserRecordCodec.readUnversioned(in));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ByteBuffer read(FileChannel channel) {
+            try {
+                return readFully(channel, position, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
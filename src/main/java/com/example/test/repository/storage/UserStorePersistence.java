@@ -0,0 +1,274 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Durable persistence for the user store: a {@link UserJournal} of every write plus periodic
+ * {@link UserSnapshots} that let old journal generations be dropped.
+ *
+ * <p>Enabled with {@code user.store.persistence.enabled=true}. Recovery loads the newest intact
+ * snapshot and replays every journal generation it does not cover. Snapshots are taken without
+ * stopping writers: the journal is rotated while the store blocks all writers, and the store is then
+ * copied while writes continue. The copy may include writes from the new generation, but
+ * replaying that generation over it still gives the right result because every record holds a
+ * full user or a delete by ID.</p>
+ *
+ * <p>The repository's ID high-water mark is kept in a small file of its own, replaced atomically
+ * whenever the mark is raised.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "user.store.persistence.enabled", havingValue = "true")
+public class UserStorePersistence {
+
+    private static final String ID_LIMIT_FILE = "id-limit.bin";
+
+    private final Path directory;
+    private final UserJournal journal;
+    private final long snapshotThreshold;
+    private final ScheduledExecutorService scheduler;
+
+    private Consumer<Runnable> underWriteLock;
+    private Supplier<Iterator<User>> users;
+
+    /**
+     * Constructs the persistence from {@code user.store.persistence.*} properties.
+     *
+     * @param env The Environment object
+     */
+    @Autowired
+    public UserStorePersistence(Environment env) {
+        this(Path.of(env.getProperty("user.store.persistence.dir", "data")),
+                FsyncPolicy.valueOf(env.getProperty("user.store.persistence.fsync", "interval").toUpperCase(Locale.ROOT)),
+                env.getProperty("user.store.persistence.fsync-interval-ms", Long.class, 100L),
+                env.getProperty("user.store.persistence.snapshot-threshold", Long.class, 100_000L));
+    }
+
+    /**
+     * Constructs the persistence.
+     *
+     * @param directory         The directory holding journal and snapshot files
+     * @param fsyncPolicy       When journal records are forced to disk
+     * @param fsyncIntervalMs   The force interval for {@link FsyncPolicy#INTERVAL}
+     * @param snapshotThreshold The number of journal records after which a snapshot is taken
+     */
+    public UserStorePersistence(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, long snapshotThreshold) {
+        this.directory = directory;
+        this.journal = new UserJournal(directory, fsyncPolicy, fsyncIntervalMs);
+        this.snapshotThreshold = snapshotThreshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Restores the persisted state and opens a new journal generation for appending.
+     *
+     * <p>The snapshot is loaded in parallel chunks through {@code load}, which must therefore be
+     * thread-safe. Journal records are then replayed in order through {@code put}, which must
+     * replace any stored user with the same ID, and {@code delete}, which must ignore unknown IDs,
+     * because a snapshot may already contain some of the replayed writes.</p>
+     *
+     * @param load   Stores a {@link User} from the snapshot
+     * @param put    Stores a {@link User} from the journal
+     * @param delete Removes a {@link User} by ID
+     * @throws IOException if the files cannot be read or the journal cannot be opened
+     */
+    public void recover(Consumer<User> load, Consumer<User> put, LongConsumer delete) throws IOException {
+        long started = System.nanoTime();
+        OptionalLong snapshot = UserSnapshots.loadLatest(directory, load);
+        long firstGeneration = snapshot.orElse(0);
+        NavigableMap<Long, Path> journals = UserJournal.generations(
+                directory, UserJournal.FILE_PREFIX, UserJournal.FILE_SUFFIX).tailMap(firstGeneration, true);
+
+        long replayed = 0;
+        for (Map.Entry<Long, Path> entry : journals.entrySet()) {
+            replayed += UserJournal.replay(entry.getValue(), put, delete, entry.getKey().equals(journals.lastKey()));
+        }
+        long lastGeneration = journals.isEmpty() ? firstGeneration : journals.lastKey();
+        journal.start(lastGeneration + 1);
+        log.info("Recovered user store from {} in {} ms (snapshot generation {}, {} journal records replayed)",
+                directory, (System.nanoTime() - started) / 1_000_000,
+                snapshot.isPresent() ? snapshot.getAsLong() : "none", replayed);
+    }
+
+    /**
+     * Starts taking a snapshot whenever the journal has grown past the configured threshold.
+     *
+     * @param underWriteLock Runs a task while the store blocks writers
+     * @param users          Supplies an iterator over all stored users
+     */
+    public void startSnapshots(Consumer<Runnable> underWriteLock, Supplier<Iterator<User>> users) {
+        this.underWriteLock = underWriteLock;
+        this.users = users;
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (journal.appendedSinceRotation() >= snapshotThreshold) {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to take user store snapshot", e);
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes a snapshot now and deletes the journal generations and snapshots it supersedes.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void snapshot() throws IOException {
+        long[] generation = new long[1];
+        underWriteLock.accept(() -> {
+            try {
+                generation[0] = journal.rotate();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long count = UserSnapshots.write(directory, generation[0], users.get());
+        UserSnapshots.deleteBefore(directory, generation[0]);
+        for (Path file : UserJournal.generations(directory, UserJournal.FILE_PREFIX, UserJournal.FILE_SUFFIX)
+                .headMap(generation[0]).values()) {
+            Files.deleteIfExists(file);
+        }
+        log.info("Wrote user store snapshot generation {} with {} users", generation[0], count);
+    }
+
+    /**
+     * Reads the persisted ID high-water mark.
+     *
+     * @return The mark, or 0 if none has been persisted or the file is damaged
+     * @throws IOException if the file cannot be read
+     */
+    public long readIdLimit() throws IOException {
+        Path file = directory.resolve(ID_LIMIT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() != 2 * Long.BYTES) {
+            log.warn("Ignoring damaged ID high-water mark {}", file);
+            return 0;
+        }
+        long limit = buffer.getLong();
+        if (buffer.getLong() != ~limit) {
+            log.warn("Ignoring damaged ID high-water mark {}", file);
+            return 0;
+        }
+        return limit;
+    }
+
+    /**
+     * Durably replaces the persisted ID high-water mark.
+     *
+     * @param limit The new mark; IDs below it may have been handed out
+     * @throws UncheckedIOException if the mark cannot be written
+     */
+    public void writeIdLimit(long limit) {
+        Path file = directory.resolve(ID_LIMIT_FILE);
+        Path temp = directory.resolve(ID_LIMIT_FILE + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(2 * Long.BYTES).putLong(limit).putLong(~limit).flip());
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Journals the full state of a stored {@link User}.
+     *
+     * @param user The {@link User} after the write
+     * @return The journal sequence number
+     */
+    public long appendPut(User user) {
+        return journal.appendPut(user);
+    }
+
+    /**
+     * Journals the deletion of a {@link User}.
+     *
+     * @param id The ID of the deleted {@link User}
+     * @return The journal sequence number
+     */
+    public long appendDelete(long id) {
+        return journal.appendDelete(id);
+    }
+
+    /**
+     * Returns the sequence number of the last journaled write.
+     *
+     * @return The last sequence number
+     */
+    public long lastSequence() {
+        return journal.lastSequence();
+    }
+
+    /**
+     * Waits until a journaled write is committed according to the fsync policy.
+     *
+     * @param sequence The journal sequence number
+     */
+    public void awaitCommit(long sequence) {
+        journal.awaitCommit(sequence);
+    }
+
+    /**
+     * Waits until a journaled write has been forced to disk.
+     *
+     * @param sequence The journal sequence number
+     */
+    public void awaitDurable(long sequence) {
+        journal.awaitDurable(sequence);
+    }
+
+    /**
+     * Stops taking snapshots and flushes and closes the journal.
+     *
+     * @throws IOException if the final flush fails
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+}
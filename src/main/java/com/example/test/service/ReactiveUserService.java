@@ -0,0 +1,51 @@
+package com.example.test.service;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Non-blocking counterpart of {@link UserService}.
+ *
+ * <p>Queries emit users lazily as the subscriber requests them, so a slow client only holds
+ * the users it has not consumed yet. Writes may block on the store's write locks or the journal
+ * and are therefore run on a scheduler meant for blocking work.</p>
+ */
+public interface ReactiveUserService {
+
+    /**
+     * Streams all users.
+     *
+     * @return Flux of all users
+     */
+    Flux<User> getAllUsers();
+
+    /**
+     * Streams users born strictly between two dates.
+     *
+     * @param fromDate The start date of the range
+     * @param toDate   The end date of the range
+     * @return Flux of users within the range, failing with {@link IllegalArgumentException}
+     *         if the range is empty
+     */
+    Flux<User> getUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Creates a new {@link User}.
+     *
+     * @param userDto The {@link UserDto} to create the {@link User} from
+     * @return Mono of the created {@link User}
+     */
+    Mono<User> createUser(UserDto userDto);
+
+    /**
+     * Deletes a {@link User} by email.
+     *
+     * @param email The email of the {@link User} to delete
+     * @return Mono completing once the {@link User} is deleted
+     */
+    Mono<Void> deleteUser(String email);
+}
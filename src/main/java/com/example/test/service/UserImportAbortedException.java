@@ -0,0 +1,25 @@
+package com.example.test.service;
+
+import com.example.test.model.dto.UserImportResult;
+import lombok.Getter;
+
+/**
+ * Thrown when an import stops early because its input cannot be read any further, e.g. because
+ * the JSON is malformed. The users read before that point have been imported and stay imported.
+ */
+@Getter
+public class UserImportAbortedException extends RuntimeException {
+
+    private final transient UserImportResult result;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param result The summary of the users imported before the input failed, with the error last
+     * @param cause  The error reading the input
+     */
+    public UserImportAbortedException(UserImportResult result, Throwable cause) {
+        super("Import stopped after " + result.getImported() + " users: " + cause.getMessage(), cause);
+        this.result = result;
+    }
+}
@@ -1,10 +1,23 @@
 package com.example.test.service;
 
 import com.example.test.model.User;
+import com.example.test.model.dto.UserBatchOperation;
+import com.example.test.model.dto.UserBatchResult;
+import com.example.test.model.dto.UserChangeBatch;
 import com.example.test.model.dto.UserDto;
+import com.example.test.model.dto.UserFilter;
+import com.example.test.model.dto.UserImportResult;
+import com.example.test.model.dto.UserStoreStatus;
+import com.example.test.repository.UserVersionConflictException;
+import com.example.test.service.cache.CachedResponse;
+import com.example.test.service.changes.UserChangesExpiredException;
 
 import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Service interface for managing users.
@@ -28,7 +41,75 @@ public interface UserService {
     List<User> getAllUsers();
 
     /**
-     * Creates a new {@link User}.
+     * Retrieves all users as a JSON array, served from the result cache while no user has changed.
+     *
+     * @return The serialized users and the version they were read at
+     */
+    CachedResponse getAllUsersJson();
+
+    /**
+     * Retrieves a page of users ordered by ID, continuing after the given cursor.
+     *
+     * @param afterId The ID of the last {@link User} of the previous page, or null for the first page
+     * @param limit   The maximum number of users to return
+     * @return List of users
+     * @throws IllegalArgumentException if limit is not positive or exceeds the maximum page size
+     */
+    List<User> getUsersPage(Long afterId, int limit);
+
+    /**
+     * Retrieves a {@link User} by ID.
+     *
+     * @param id The ID of the {@link User}
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    Optional<User> getUserById(Long id);
+
+    /**
+     * Retrieves a {@link User} by email.
+     *
+     * @param email The email of the {@link User}
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    Optional<User> getUserByEmail(String email);
+
+    /**
+     * Retrieves the users with the given IDs.
+     *
+     * @param ids The IDs to look up
+     * @return List of the users found, in the order of {@code ids}
+     * @throws IllegalArgumentException if more IDs are requested than the maximum page size
+     */
+    List<User> getUsersByIds(List<Long> ids);
+
+    /**
+     * Searches users by name, email and address.
+     *
+     * @param query The search text; every token must be a prefix of a token of the user
+     * @param limit The maximum number of users to return
+     * @return The best matching users, best match first
+     * @throws IllegalArgumentException if the query is blank or the limit is out of range
+     */
+    List<User> searchUsers(String query, int limit);
+
+    /**
+     * Retrieves the users matching every filter that is set.
+     *
+     * @param filter The filters to apply
+     * @return The matching users with the lowest IDs, in ascending ID order
+     * @throws IllegalArgumentException if the age band or the limit is invalid
+     */
+    List<User> filterUsers(UserFilter filter);
+
+    /**
+     * Streams all users without materializing them in a single list.
+     *
+     * @return Stream of users
+     */
+    Stream<User> streamAllUsers();
+
+    /**
+     * Creates a new {@link User} with a server-assigned ID; an ID in the request is ignored.
      *
      * @param userDTO {@link UserDto} object containing user information
      * @return The created {@link User}
@@ -46,6 +127,18 @@ public interface UserService {
      */
     User updateUser(Long id, UserDto userDTO);
 
+    /**
+     * Updates an existing {@link User} only if it is still at the given version.
+     *
+     * @param id              The ID of the {@link User} to be updated
+     * @param userDTO         {@link UserDto} object containing updated user information
+     * @param expectedVersion The version the stored {@link User} must be at
+     * @return The updated user
+     * @throws IllegalArgumentException     if {@link User} with specified ID does not exist
+     * @throws UserVersionConflictException if the {@link User} has been changed since that version
+     */
+    User updateUser(Long id, UserDto userDTO, long expectedVersion);
+
     /**
      * Deletes a {@link User} by email.
      *
@@ -54,6 +147,41 @@ public interface UserService {
      */
     void deleteUser(String email);
 
+    /**
+     * Creates a new {@link User} like {@link #createUser}, without waiting for the write.
+     *
+     * <p>With the write pipeline enabled, the write is queued and applied in a batch with other
+     * writes; otherwise it is applied before this method returns.</p>
+     *
+     * @param userDTO {@link UserDto} object containing user information
+     * @param durable Whether to acknowledge the write only once it has been forced to disk
+     * @return A future of the created {@link User}, failed with {@link IllegalArgumentException}
+     *         if the user is too young or the email is taken
+     */
+    CompletableFuture<User> createUserAsync(UserDto userDTO, boolean durable);
+
+    /**
+     * Updates an existing {@link User} like {@link #updateUser}, without waiting for the write.
+     *
+     * @param id              The ID of the {@link User} to be updated
+     * @param userDTO         {@link UserDto} object containing updated user information
+     * @param expectedVersion The version the stored {@link User} must be at, or null for any version
+     * @param durable         Whether to acknowledge the write only once it has been forced to disk
+     * @return A future of the updated {@link User}, failed with {@link IllegalArgumentException} if it
+     *         does not exist or with {@link UserVersionConflictException} if it is at another version
+     */
+    CompletableFuture<User> updateUserAsync(Long id, UserDto userDTO, Long expectedVersion, boolean durable);
+
+    /**
+     * Deletes a {@link User} by email like {@link #deleteUser}, without waiting for the write.
+     *
+     * @param email   The email of the {@link User} to be deleted
+     * @param durable Whether to acknowledge the write only once it has been forced to disk
+     * @return A future completed once the user is deleted, failed with {@link IllegalArgumentException}
+     *         if there is no such user
+     */
+    CompletableFuture<Void> deleteUserAsync(String email, boolean durable);
+
     /**
      * Retrieves users within a specified birth date range.
      *
@@ -63,4 +191,80 @@ public interface UserService {
      * @throws IllegalArgumentException if fromDate is after toDate or if fromDate is equal to toDate
      */
     List<User> getUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Retrieves users within a specified birth date range as a JSON array, served from the
+     * result cache while no user has changed.
+     *
+     * @param fromDate The start date of the range
+     * @param toDate   The end date of the range
+     * @return The serialized users and the version they were read at
+     * @throws IllegalArgumentException if the range is empty
+     */
+    CachedResponse getUsersByBirthDateRangeJson(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Applies a batch of create, update and delete operations in one pass.
+     *
+     * <p>Every operation is validated and mapped before any of them is applied. Invalid
+     * operations are reported as failed and do not prevent the others from being applied.</p>
+     *
+     * @param operations The operations to apply, in order
+     * @return One {@link UserBatchResult} per operation, in the same order
+     * @throws IllegalArgumentException if the batch exceeds the maximum batch size
+     */
+    List<UserBatchResult> applyBatch(List<UserBatchOperation> operations);
+
+    /**
+     * Applies a batch of operations read lazily from a source, e.g. a request body.
+     *
+     * <p>At most one operation more than the maximum batch size is read, so an oversized batch is
+     * rejected before the rest of the source is parsed.</p>
+     *
+     * @param operations The operations to apply, in order
+     * @return One {@link UserBatchResult} per operation, in the same order
+     * @throws IllegalArgumentException if the batch exceeds the maximum batch size
+     */
+    List<UserBatchResult> applyBatch(Iterator<UserBatchOperation> operations);
+
+    /**
+     * Imports users from a lazily read source in bounded chunks.
+     *
+     * <p>The source is only pulled as fast as chunks are applied, so memory usage does not
+     * depend on the size of the input. Records the source rejects by throwing
+     * {@link IllegalArgumentException} are counted as failed and the import continues. Users keep
+     * the IDs they carry; users without one are assigned a new ID.</p>
+     *
+     * <p>If the source throws {@link java.io.UncheckedIOException}, e.g. on malformed JSON, the
+     * users read before are still imported and the import stops.</p>
+     *
+     * @param users Iterator over the users to create
+     * @return Summary of the import
+     * @throws UserImportAbortedException if the source could not be read to the end, carrying the
+     *                                    summary of what was imported
+     */
+    UserImportResult importUsers(Iterator<User> users);
+
+    /**
+     * Reports whether the user store has finished building its secondary indexes.
+     *
+     * @return The current {@link UserStoreStatus}
+     */
+    UserStoreStatus getStoreStatus();
+
+    /**
+     * Reads the changes of the user store after a cursor of the change feed.
+     *
+     * <p>Without a cursor, the result is empty and only carries the current cursor. Reading it
+     * before loading all users and then polling from it misses no change.</p>
+     *
+     * @param since The sequence of the last change seen, or null to obtain the current cursor
+     * @param limit The maximum number of changes to return, or null for the maximum batch size
+     * @return A future of the changes after {@code since}, which waits for the next change if there
+     *         is none yet and completes with an empty batch once the poll timeout has passed, or
+     *         fails with {@link UserChangesExpiredException} if the changes after {@code since}
+     *         are no longer retained
+     * @throws IllegalArgumentException if the cursor is negative or the limit is out of range
+     */
+    CompletableFuture<UserChangeBatch> pollChanges(Long since, Integer limit);
 }
@@ -0,0 +1,77 @@
+package com.example.test.service.cache;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A JSON response identified by the data version it is computed from.
+ *
+ * <p>The body is written on demand: from cached bytes when they are available, otherwise by
+ * serializing the result straight to the output stream.</p>
+ */
+@Getter
+public class CachedResponse {
+
+    private final long epoch;
+
+    private final long version;
+
+    private final Body body;
+
+    /**
+     * Constructs a response with a body that is written on demand.
+     *
+     * @param epoch   Identifies the process that computed the version
+     * @param version The data version
+     * @param body    Writes the JSON body
+     */
+    public CachedResponse(long epoch, long version, Body body) {
+        this.epoch = epoch;
+        this.version = version;
+        this.body = body;
+    }
+
+    /**
+     * Constructs a response with a precomputed body.
+     *
+     * @param epoch   Identifies the process that computed the version
+     * @param version The data version
+     * @param json    The JSON body
+     */
+    public CachedResponse(long epoch, long version, byte[] json) {
+        this(epoch, version, out -> out.write(json));
+    }
+
+    /**
+     * Returns the weak entity tag of the response, derived from its data version.
+     *
+     * <p>The epoch keeps a tag handed out before a restart from matching once the version counter
+     * has started over.</p>
+     *
+     * @return The weak ETag, e.g. {@code W/"lx4k2a-42"}
+     */
+    public String getETag() {
+        return "W/\"" + Long.toString(epoch, 36) + '-' + version + "\"";
+    }
+
+    /**
+     * Writes the JSON body.
+     *
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        body.writeTo(out);
+    }
+
+    /**
+     * Writes the body of a {@link CachedResponse}.
+     */
+    @FunctionalInterface
+    public interface Body {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
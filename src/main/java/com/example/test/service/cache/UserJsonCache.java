@@ -0,0 +1,165 @@
+package com.example.test.service.cache;
+
+import com.example.test.model.User;
+import com.example.test.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Per-user cache of the UTF-8 JSON representation of each stored {@link User}.
+ *
+ * <p>Fragments are computed with the application {@link ObjectMapper} on first use and keyed by
+ * the user's version, so list responses can copy cached bytes for every user that has not been
+ * written since it was last serialized. A fragment is served only to a user at the version it
+ * was computed from, and a write drops the user's fragment to free it early. Because a deleted
+ * ID may be saved again starting over at its first version, a fragment is not kept if a user was
+ * deleted between the {@link #stamp()} read before the users were loaded and the fragment being
+ * stored. Once {@code user.json-cache.max-entries} fragments are cached, users without one are
+ * serialized straight to the output.</p>
+ */
+@Component
+public class UserJsonCache {
+
+    private final ObjectWriter writer;
+    private final int maxEntries;
+    private final Map<Long, Fragment> fragments = new ConcurrentHashMap<>();
+    private final AtomicLong deletes = new AtomicLong();
+
+    /**
+     * Constructs the cache from {@code user.json-cache.*} properties.
+     *
+     * @param objectMapper   The ObjectMapper used on a cache miss
+     * @param userRepository The repository whose writes invalidate fragments
+     * @param env            The Environment object
+     */
+    @Autowired
+    public UserJsonCache(ObjectMapper objectMapper, UserRepository userRepository, Environment env) {
+        this(objectMapper, userRepository, env.getProperty("user.json-cache.max-entries", Integer.class, 1_000_000));
+    }
+
+    /**
+     * Constructs the cache.
+     *
+     * @param objectMapper   The ObjectMapper used on a cache miss
+     * @param userRepository The repository whose writes invalidate fragments
+     * @param maxEntries     The maximum number of cached fragments
+     */
+    public UserJsonCache(ObjectMapper objectMapper, UserRepository userRepository, int maxEntries) {
+        this.writer = objectMapper.writerFor(User.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.maxEntries = maxEntries;
+        userRepository.addWriteListener((id, user) -> {
+            if (user == null) {
+                deletes.incrementAndGet();
+            }
+            fragments.remove(id);
+        });
+    }
+
+    /**
+     * Returns the stamp to read before loading the users passed to the write methods.
+     *
+     * @return The current stamp
+     */
+    public long stamp() {
+        return deletes.get();
+    }
+
+    /**
+     * Writes the JSON representation of a {@link User}.
+     *
+     * @param user  The {@link User} to write
+     * @param stamp A {@link #stamp()} read before {@code user} was loaded
+     * @param out   The stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(User user, long stamp, OutputStream out) throws IOException {
+        Fragment cached = fragments.get(user.getId());
+        if (cached != null && cached.version == user.getVersion()) {
+            out.write(cached.json);
+            return;
+        }
+        if (cached == null && fragments.size() >= maxEntries) {
+            writer.writeValue(out, user);
+            return;
+        }
+        Fragment fragment = new Fragment(user.getVersion(), writer.writeValueAsBytes(user));
+        // Write listeners run after the write is visible, so a fragment of a user that was
+        // written meanwhile is either rejected here or removed by the listener afterwards.
+        fragments.compute(user.getId(), (id, current) -> deletes.get() == stamp
+                && (current == null || current.version < fragment.version) ? fragment : current);
+        out.write(fragment.json);
+    }
+
+    /**
+     * Writes users as a JSON array.
+     *
+     * @param users The users to write
+     * @param stamp A {@link #stamp()} read before the users were loaded
+     * @param out   The stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeArray(Stream<User> users, long stamp, OutputStream out) throws IOException {
+        out.write('[');
+        Iterator<User> iterator = users.iterator();
+        boolean first = true;
+        while (iterator.hasNext()) {
+            if (!first) {
+                out.write(',');
+            }
+            write(iterator.next(), stamp, out);
+            first = false;
+        }
+        out.write(']');
+    }
+
+    /**
+     * Writes users as newline-delimited JSON, one {@link User} per line.
+     *
+     * @param users The users to write
+     * @param stamp A {@link #stamp()} read before the users were loaded
+     * @param out   The stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeLines(Stream<User> users, long stamp, OutputStream out) throws IOException {
+        Iterator<User> iterator = users.iterator();
+        while (iterator.hasNext()) {
+            write(iterator.next(), stamp, out);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Returns the number of cached fragments.
+     *
+     * @return The number of fragments
+     */
+    public int size() {
+        return fragments.size();
+    }
+
+    private static final class Fragment {
+
+        private final long version;
+        private final byte[] json;
+
+        private Fragment(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
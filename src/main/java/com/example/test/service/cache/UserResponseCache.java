@@ -0,0 +1,290 @@
+package com.example.test.service.cache;
+
+import com.example.test.model.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded LRU cache of serialized user query results.
+ *
+ * <p>Every entry remembers the repository version it was computed from. A lookup with the
+ * current version writes the cached JSON bytes without running the query, while a lookup with
+ * a newer version recomputes and replaces the entry, so writes invalidate results without any
+ * explicit eviction. Recomputed results are assembled from the per-user fragments of
+ * {@link UserJsonCache}, so only users written since their last serialization go through
+ * Jackson. Entries are evicted in least recently used order once {@code user.cache.max-entries}
+ * or {@code user.cache.max-bytes} is exceeded.</p>
+ *
+ * <p>A missed result is serialized into a buffer of at most {@code user.cache.max-bytes}, shared
+ * with concurrent misses for the same key and version, and only then written to the response of
+ * the request that computed it, so a slow client delays nobody else. A larger result is passed on
+ * to that response as soon as it outgrows the buffer, remembered as uncacheable for its version and
+ * streamed again on each request, so memory use does not grow with the size of the store; the
+ * requests that were waiting for it run the query themselves.</p>
+ */
+@Component
+public class UserResponseCache {
+
+    private final UserJsonCache jsonCache;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long epoch = System.currentTimeMillis();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Pending> inFlight = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long bytes;
+
+    /**
+     * Constructs the cache from {@code user.cache.*} properties.
+     *
+     * @param jsonCache     The per-user JSON cache results are assembled from
+     * @param env           The Environment object
+     * @param meterRegistry The registry to publish cache metrics to, if metrics are enabled
+     */
+    @Autowired
+    public UserResponseCache(UserJsonCache jsonCache, Environment env, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(jsonCache, env.getProperty("user.cache.max-entries", Integer.class, 1024),
+                env.getProperty("user.cache.max-bytes", Long.class, 64L << 20), meterRegistry.getIfAvailable());
+    }
+
+    /**
+     * Constructs the cache.
+     *
+     * @param jsonCache     The per-user JSON cache results are assembled from
+     * @param maxEntries    The maximum number of cached results
+     * @param maxBytes      The maximum total size of cached results
+     * @param meterRegistry The registry to publish cache metrics to, or null
+     */
+    public UserResponseCache(UserJsonCache jsonCache, int maxEntries, long maxBytes, MeterRegistry meterRegistry) {
+        this.jsonCache = jsonCache;
+        this.maxEntries = maxEntries;
+        this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        if (meterRegistry != null) {
+            bindTo(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the result of a query at a version. The query runs, if at all, when the body is written.
+     *
+     * @param key     The key identifying the query and its parameters
+     * @param version The current repository version, read before running the query
+     * @param users   Runs the query
+     * @return The result, whose body is a JSON array
+     */
+    public CachedResponse get(String key, long version, Supplier<Stream<User>> users) {
+        return new CachedResponse(epoch, version, out -> write(key, version, users, out));
+    }
+
+    private void write(String key, long version, Supplier<Stream<User>> users, OutputStream out) throws IOException {
+        Entry cached;
+        Pending pending = null;
+        boolean leader = false;
+        synchronized (entries) {
+            cached = entries.get(key);
+            if (cached != null && cached.version != version) {
+                cached = null;
+            }
+            if (cached == null) {
+                pending = inFlight.get(key);
+                if (pending == null || pending.version < version) {
+                    pending = new Pending(version);
+                    inFlight.put(key, pending);
+                    leader = true;
+                } else if (pending.version > version) {
+                    // A newer result is being computed; this one is stale already and is not shared.
+                    pending = null;
+                }
+            }
+        }
+        if (cached != null && cached.body != null) {
+            hits.increment();
+            out.write(cached.body);
+            return;
+        }
+        if (leader) {
+            misses.increment();
+            compute(key, pending, users, out);
+            return;
+        }
+        if (pending != null) {
+            byte[] body = pending.result.join();
+            if (body != null) {
+                hits.increment();
+                out.write(body);
+                return;
+            }
+        }
+        misses.increment();
+        serialize(users, out);
+    }
+
+    /**
+     * Runs the query for all concurrent requests of its key and version, keeping the result if it
+     * is small enough to be cached. The result is shared before it is written to {@code out}.
+     */
+    private void compute(String key, Pending pending, Supplier<Stream<User>> users, OutputStream out) throws IOException {
+        BufferingOutputStream buffer = new BufferingOutputStream(out, maxBytes, () -> pending.result.complete(null));
+        byte[] body = null;
+        boolean complete = false;
+        try {
+            serialize(users, buffer);
+            body = buffer.buffered();
+            complete = true;
+        } finally {
+            synchronized (entries) {
+                inFlight.remove(key, pending);
+                Entry previous = entries.get(key);
+                if (complete && (previous == null || previous.version < pending.version)) {
+                    entries.put(key, new Entry(pending.version, body));
+                    bytes += size(body) - (previous == null ? 0 : size(previous.body));
+                    evict();
+                }
+            }
+            pending.result.complete(body);
+        }
+        if (body != null) {
+            out.write(body);
+        }
+    }
+
+    private void serialize(Supplier<Stream<User>> users, OutputStream out) throws IOException {
+        long stamp = jsonCache.stamp();
+        try (Stream<User> stream = users.get()) {
+            jsonCache.writeArray(stream, stamp, out);
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= size(eldest.next().body);
+            eldest.remove();
+        }
+    }
+
+    private static int size(byte[] body) {
+        return body == null ? 0 : body.length;
+    }
+
+    private void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.cache.requests", hits, LongAdder::sum)
+                .description("Cached user query lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("user.cache.requests", misses, LongAdder::sum)
+                .description("Cached user query lookups")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("user.cache.hit.ratio", this, cache -> {
+                    double total = cache.hits.sum() + cache.misses.sum();
+                    return total == 0 ? 0 : cache.hits.sum() / total;
+                })
+                .description("Share of cached user query lookups served from the cache")
+                .register(registry);
+        Gauge.builder("user.cache.size", this, cache -> {
+                    synchronized (cache.entries) {
+                        return cache.bytes;
+                    }
+                })
+                .description("Total size of cached user query results")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * A cached result, or a marker that the result at {@code version} is too large to cache.
+     */
+    private static final class Entry {
+
+        private final long version;
+        private final byte[] body;
+
+        private Entry(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    /**
+     * A result being computed, completed with its body or with null if it was not kept.
+     */
+    private static final class Pending {
+
+        private final long version;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        private Pending(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Buffers bytes up to a limit. Once they would exceed it, runs a callback, writes the buffered
+     * bytes to the underlying stream and passes everything after them through.
+     */
+    private static final class BufferingOutputStream extends FilterOutputStream {
+
+        private final long limit;
+        private final Runnable overflow;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+        private BufferingOutputStream(OutputStream out, long limit, Runnable overflow) {
+            super(out);
+            this.limit = limit;
+            this.overflow = overflow;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (buffer != null && buffer.size() + (long) len > limit) {
+                overflow.run();
+                buffer.writeTo(out);
+                buffer = null;
+            }
+            if (buffer == null) {
+                out.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer == null) {
+                out.flush();
+            }
+        }
+
+        /**
+         * Returns the bytes written, or null if they exceeded the limit and were passed through.
+         */
+        private byte[] buffered() {
+            return buffer == null ? null : buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.test.service.changes;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserChange;
+import com.example.test.model.dto.UserChangeBatch;
+import com.example.test.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process change feed of the user store.
+ *
+ * <p>Every save, update and delete, including those applied by batches and imports, is recorded
+ * as a {@link UserChange} with the next sequence number in a ring of the last
+ * {@code user.changes.capacity} changes. Changes are captured by a repository write listener,
+ * which runs while the written user's stripes are held, so changes to one user are sequenced in
+ * the order they were applied. Recording takes no lock: a writer claims the next sequence from a
+ * counter and then publishes the change in its slot, so writes to different users stay as
+ * concurrent as the repository's stripes allow. Readers stop at the first sequence that has been
+ * claimed but not yet published.</p>
+ *
+ * <p>Readers poll with the sequence they have seen. A poll that has nothing to read parks until
+ * the next change or until {@code user.changes.poll-timeout-ms} passes. A writer does not touch the
+ * parked polls: after publishing its change it only raises a flag and unparks a single dispatcher
+ * thread, so a write costs the same however many clients are tailing the feed. The dispatcher
+ * reads the changes for every parked poll and hands the completions to a fixed pool of
+ * {@code user.changes.notifier-threads}, which also runs whatever the pollers chained to their
+ * futures, such as writing an event stream. Changes that arrive while a reader is busy are
+ * returned together by its next poll, up to the requested limit. Sequences start over after a
+ * restart, and cursors from before it are rejected like evicted ones.</p>
+ */
+@Component
+public class UserChangeLog {
+
+    private final AtomicReferenceArray<UserChange> ring;
+    private final int mask;
+    private final int maxBatch;
+    private final long pollTimeoutMs;
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean changed = new AtomicBoolean();
+    private final ExecutorService notifier;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * Constructs the change feed from {@code user.changes.*} properties.
+     *
+     * @param userRepository The repository whose writes are recorded
+     * @param env            The Environment object
+     */
+    @Autowired
+    public UserChangeLog(UserRepository userRepository, Environment env) {
+        this(userRepository, env.getProperty("user.changes.capacity", Integer.class, 65536),
+                env.getProperty("user.changes.max-batch", Integer.class, 1000),
+                env.getProperty("user.changes.poll-timeout-ms", Long.class, 25_000L),
+                env.getProperty("user.changes.notifier-threads", Integer.class,
+                        Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructs the change feed with one notifier thread per core.
+     *
+     * @param userRepository The repository whose writes are recorded
+     * @param capacity       The minimum number of retained changes, rounded up to a power of two
+     * @param maxBatch       The maximum number of changes returned by one poll
+     * @param pollTimeoutMs  How long a poll waits for a change before returning an empty batch
+     */
+    public UserChangeLog(UserRepository userRepository, int capacity, int maxBatch, long pollTimeoutMs) {
+        this(userRepository, capacity, maxBatch, pollTimeoutMs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs the change feed.
+     *
+     * @param userRepository The repository whose writes are recorded
+     * @param capacity       The minimum number of retained changes, rounded up to a power of two
+     * @param maxBatch       The maximum number of changes returned by one poll
+     * @param pollTimeoutMs  How long a poll waits for a change before returning an empty batch
+     * @param notifierThreads The number of threads completing parked polls
+     */
+    public UserChangeLog(UserRepository userRepository, int capacity, int maxBatch, long pollTimeoutMs,
+                         int notifierThreads) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxBatch = maxBatch;
+        this.pollTimeoutMs = pollTimeoutMs;
+        this.notifier = Executors.newFixedThreadPool(notifierThreads, runnable -> {
+            Thread thread = new Thread(runnable, "user-change-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "user-change-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+        userRepository.addWriteListener(this::record);
+    }
+
+    /**
+     * Returns the sequence of the latest change, to start reading from.
+     *
+     * <p>Write listeners run once the write is visible, so every change up to this sequence is
+     * already reflected by the repository.</p>
+     *
+     * @return The latest sequence, or 0 if nothing has changed since startup
+     */
+    public long lastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * Returns the maximum number of changes a single poll may request.
+     *
+     * @return The maximum batch size
+     */
+    public int maxBatch() {
+        return maxBatch;
+    }
+
+    /**
+     * Reads the changes after a cursor, waiting for the next change if there are none yet.
+     *
+     * @param since The sequence of the last change seen
+     * @param limit The maximum number of changes to return, between 1 and {@link #maxBatch()}
+     * @return A future of the changes after {@code since}, which completes with an empty batch
+     *         if no change arrives within the poll timeout, or fails with
+     *         {@link UserChangesExpiredException} if the changes after {@code since} are no longer retained
+     * @throws IllegalArgumentException if the limit is out of range
+     */
+    public CompletableFuture<UserChangeBatch> poll(long since, int limit) {
+        if (limit < 1 || limit > maxBatch) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxBatch);
+        }
+        UserChangeBatch batch;
+        try {
+            batch = read(since, limit);
+        } catch (UserChangesExpiredException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!batch.getChanges().isEmpty()) {
+            return CompletableFuture.completedFuture(batch);
+        }
+        Waiter waiter = new Waiter(since, limit);
+        waiter.future.whenComplete((result, error) -> waiters.remove(waiter));
+        try {
+            CompletableFuture.delayedExecutor(pollTimeoutMs, TimeUnit.MILLISECONDS, notifier)
+                    .execute(() -> waiter.future.complete(batch));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(batch);
+        }
+        waiters.add(waiter);
+        deliver(waiter, Runnable::run);
+        return waiter.future;
+    }
+
+    /**
+     * Stops completing parked polls.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        notifier.shutdownNow();
+    }
+
+    /**
+     * Appends the change that was just applied to a user and signals the dispatcher.
+     *
+     * <p>Runs while the writer holds the user's stripes, so it does constant work regardless of
+     * the number of parked polls.</p>
+     */
+    private void record(long id, User user) {
+        long sequence = lastSequence.incrementAndGet();
+        UserChange.Type type = user == null ? UserChange.Type.DELETED
+                : user.getVersion() == 0 ? UserChange.Type.CREATED : UserChange.Type.UPDATED;
+        ring.set((int) (sequence & mask), new UserChange(sequence, type, id, user));
+        if (!waiters.isEmpty() && !changed.get() && changed.compareAndSet(false, true)) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Waits for changes and offers them to every parked poll.
+     *
+     * <p>A poll registers before it reads the ring and a writer checks the registrations after
+     * publishing, and the flag is cleared before the polls are read, so a change published
+     * concurrently is seen either by the poll itself or by the next round of the dispatcher.</p>
+     */
+    private void dispatch() {
+        while (!closed) {
+            if (!changed.getAndSet(false)) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                for (Waiter waiter : waiters) {
+                    deliver(waiter, notifier);
+                }
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the remaining polls are abandoned with the notifier
+                return;
+            }
+        }
+    }
+
+    /**
+     * Completes a registered poll through the executor if changes were published after its cursor.
+     */
+    private void deliver(Waiter waiter, Executor completer) {
+        if (waiter.future.isDone()) {
+            waiters.remove(waiter);
+            return;
+        }
+        try {
+            UserChangeBatch batch = read(waiter.since, waiter.limit);
+            if (!batch.getChanges().isEmpty() && waiters.remove(waiter)) {
+                completer.execute(() -> waiter.future.complete(batch));
+            }
+        } catch (UserChangesExpiredException e) {
+            if (waiters.remove(waiter)) {
+                completer.execute(() -> waiter.future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private UserChangeBatch read(long since, int limit) {
+        long last = lastSequence.get();
+        long firstAvailable = Math.max(1, last - ring.length() + 1);
+        if (since < firstAvailable - 1 || since > last) {
+            throw new UserChangesExpiredException(since, firstAvailable);
+        }
+        List<UserChange> changes = new ArrayList<>((int) Math.min(limit, last - since));
+        for (long sequence = since + 1; sequence <= last && changes.size() < limit; sequence++) {
+            UserChange change = ring.get((int) (sequence & mask));
+            if (change == null || change.getSequence() < sequence) {
+                // Claimed by a writer that has not published it yet
+                break;
+            }
+            if (change.getSequence() > sequence) {
+                throw new UserChangesExpiredException(since, change.getSequence() - ring.length() + 1);
+            }
+            changes.add(change);
+        }
+        return new UserChangeBatch(changes, since + changes.size());
+    }
+
+    private static final class Waiter {
+
+        private final long since;
+        private final int limit;
+        private final CompletableFuture<UserChangeBatch> future = new CompletableFuture<>();
+
+        private Waiter(long since, int limit) {
+            this.since = since;
+            this.limit = limit;
+        }
+    }
+}
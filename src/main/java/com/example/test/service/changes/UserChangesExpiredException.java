@@ -0,0 +1,27 @@
+package com.example.test.service.changes;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the change feed is read from a cursor it can no longer continue from, either
+ * because the changes after it have been evicted or because it was issued before a restart.
+ * The reader has to reload the users and continue from a fresh cursor.
+ */
+@Getter
+public class UserChangesExpiredException extends RuntimeException {
+
+    private final long since;
+    private final long firstAvailable;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param since          The cursor that was read from
+     * @param firstAvailable The sequence of the oldest retained change
+     */
+    public UserChangesExpiredException(long since, long firstAvailable) {
+        super("Changes after sequence " + since + " are no longer available; reload the users and continue from a new cursor");
+        this.since = since;
+        this.firstAvailable = firstAvailable;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.test.service.impl;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserDto;
+import com.example.test.repository.UserRepository;
+import com.example.test.service.ReactiveUserService;
+import com.example.test.service.UserService;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+
+/**
+ * Implementation of the {@link ReactiveUserService} interface.
+ *
+ * <p>Reads adapt the repository's lazy, lock-free streams, so users are looked up only when
+ * the subscriber requests them. Writes delegate to {@link UserService} for validation and run
+ * on {@link Schedulers#boundedElastic()}.</p>
+ */
+@Service
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+
+    private final UserService userService;
+
+    private final UserRepository userRepository;
+
+    /**
+     * Constructs a new ReactiveUserServiceImpl with the specified dependencies.
+     *
+     * @param userService    The blocking UserService used for writes
+     * @param userRepository The UserRepository to stream users from
+     */
+    public ReactiveUserServiceImpl(UserService userService, UserRepository userRepository) {
+        this.userService = userService;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public Flux<User> getAllUsers() {
+        return Flux.fromStream(userRepository::stream);
+    }
+
+    @Override
+    public Flux<User> getUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate) {
+        if (!fromDate.isBefore(toDate)) {
+            return Flux.error(new IllegalArgumentException("Wrong date range"));
+        }
+        return Flux.fromStream(() -> userRepository.streamByBirthDateAfterAndBirthDateBefore(fromDate, toDate));
+    }
+
+    @Override
+    public Mono<User> createUser(UserDto userDto) {
+        return Mono.fromCallable(() -> userService.createUser(userDto))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> deleteUser(String email) {
+        return Mono.fromRunnable(() -> userService.deleteUser(email))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+}
@@ -2,18 +2,40 @@ package com.example.test.service.impl;
 
 import com.example.test.mapper.UserMapper;
 import com.example.test.model.User;
+import com.example.test.model.dto.UserBatchOperation;
+import com.example.test.model.dto.UserBatchResult;
+import com.example.test.model.dto.UserChangeBatch;
 import com.example.test.model.dto.UserDto;
+import com.example.test.model.dto.UserFilter;
+import com.example.test.model.dto.UserImportResult;
+import com.example.test.model.dto.UserStoreStatus;
+import com.example.test.repository.UserQuery;
 import com.example.test.repository.UserRepository;
+import com.example.test.repository.UserVersionConflictException;
+import com.example.test.service.UserImportAbortedException;
 import com.example.test.service.UserService;
+import com.example.test.service.cache.CachedResponse;
+import com.example.test.service.changes.UserChangeLog;
+import com.example.test.service.pipeline.UserWritePipeline;
+import com.example.test.service.cache.UserResponseCache;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.Period;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the {@link UserService} interface.
@@ -28,19 +50,75 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private final UserMapper userMapper;
 
+    private final UserResponseCache responseCache;
+
+    private final UserChangeLog changeLog;
+
+    private final UserWritePipeline writePipeline;
+
     private final int userMinAge;
 
+    private final int maxPageSize;
+
+    private final int maxBatchSize;
+
+    private final int importChunkSize;
+
+    private static final int MAX_IMPORT_ERRORS = 100;
+
+    private static final int DEFAULT_FILTER_LIMIT = 100;
+
+    /**
+     * Constructs a new UserServiceImpl with the specified dependencies.
+     *
+     * @param userRepository The UserRepository implementation
+     * @param userMapper     The UserMapper implementation
+     * @param responseCache  The cache of serialized query results
+     * @param changeLog      The change feed of the user store
+     * @param env            The Environment object
+     */
+    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper, UserResponseCache responseCache,
+                           UserChangeLog changeLog, Environment env) {
+        this(userRepository, userMapper, responseCache, changeLog, (UserWritePipeline) null, env);
+    }
+
+    /**
+     * Constructs a new UserServiceImpl that applies writes through the write pipeline, if one is configured.
+     *
+     * @param userRepository The UserRepository implementation
+     * @param userMapper     The UserMapper implementation
+     * @param responseCache  The cache of serialized query results
+     * @param changeLog      The change feed of the user store
+     * @param writePipeline  The write pipeline, if {@code user.write-pipeline.enabled} is set
+     * @param env            The Environment object
+     */
+    @Autowired
+    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper, UserResponseCache responseCache,
+                           UserChangeLog changeLog, ObjectProvider<UserWritePipeline> writePipeline, Environment env) {
+        this(userRepository, userMapper, responseCache, changeLog, writePipeline.getIfAvailable(), env);
+    }
+
     /**
      * Constructs a new UserServiceImpl with the specified dependencies.
      *
      * @param userRepository The UserRepository implementation
      * @param userMapper     The UserMapper implementation
+     * @param responseCache  The cache of serialized query results
+     * @param changeLog      The change feed of the user store
+     * @param writePipeline  The write pipeline to queue writes in, or null to apply them on the calling thread
      * @param env            The Environment object
      */
-    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper, Environment env) {
+    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper, UserResponseCache responseCache,
+                           UserChangeLog changeLog, UserWritePipeline writePipeline, Environment env) {
         this.userRepository = userRepository;
         this.userMapper = userMapper;
+        this.responseCache = responseCache;
+        this.changeLog = changeLog;
+        this.writePipeline = writePipeline;
         this.userMinAge = Integer.parseInt(env.getProperty("user.min.age"));
+        this.maxPageSize = env.getProperty("user.page.max-size", Integer.class, 1000);
+        this.maxBatchSize = env.getProperty("user.batch.max-size", Integer.class, 10000);
+        this.importChunkSize = env.getProperty("user.import.chunk-size", Integer.class, 1000);
     }
 
     /**
@@ -50,11 +128,138 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public List<User> getAllUsers() {
-        return userRepository.getUsers();
+        return userRepository.findAll();
+    }
+
+    /**
+     * Retrieves all users as a cached JSON array.
+     *
+     * @return The serialized users and the version they were read at
+     */
+    @Override
+    public CachedResponse getAllUsersJson() {
+        return responseCache.get("all", userRepository.version(), userRepository::stream);
+    }
+
+    /**
+     * Retrieves a page of users ordered by ID.
+     *
+     * @param afterId The ID to continue after, or null for the first page
+     * @param limit   The maximum number of users to return
+     * @return List of users
+     * @throws IllegalArgumentException if limit is not between 1 and the maximum page size
+     */
+    @Override
+    public List<User> getUsersPage(Long afterId, int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxPageSize);
+        }
+        return userRepository.findPage(afterId, limit);
+    }
+
+    /**
+     * Retrieves a {@link User} by ID.
+     *
+     * @param id The ID of the {@link User}
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    @Override
+    public Optional<User> getUserById(Long id) {
+        return userRepository.findById(id);
+    }
+
+    /**
+     * Retrieves a {@link User} by email.
+     *
+     * @param email The email of the {@link User}
+     * @return An Optional containing the {@link User} if found, otherwise empty
+     */
+    @Override
+    public Optional<User> getUserByEmail(String email) {
+        return userRepository.findByEmail(email);
     }
 
     /**
-     * Creates a new {@link User}.
+     * Retrieves the users with the given IDs.
+     *
+     * @param ids The IDs to look up
+     * @return List of the users found, in the order of {@code ids}
+     * @throws IllegalArgumentException if more IDs are requested than the maximum page size
+     */
+    @Override
+    public List<User> getUsersByIds(List<Long> ids) {
+        if (ids.size() > maxPageSize) {
+            throw new IllegalArgumentException("At most " + maxPageSize + " IDs can be requested at once");
+        }
+        return userRepository.findAllById(ids);
+    }
+
+    /**
+     * Searches users by name, email and address.
+     *
+     * @param query The search text
+     * @param limit The maximum number of users to return
+     * @return The best matching users, best match first
+     * @throws IllegalArgumentException if the query is blank or the limit is not between 1 and the maximum page size
+     */
+    @Override
+    public List<User> searchUsers(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxPageSize);
+        }
+        return userRepository.search(query, limit);
+    }
+
+    /**
+     * Retrieves the users matching every filter that is set.
+     *
+     * <p>An age band is turned into a birth date range relative to today, so that it can be
+     * answered from the birth date index.</p>
+     *
+     * @param filter The filters to apply
+     * @return The matching users with the lowest IDs, in ascending ID order
+     * @throws IllegalArgumentException if an age is negative, the minimum age exceeds the maximum age
+     *                                  or the limit is not between 1 and the maximum page size
+     */
+    @Override
+    public List<User> filterUsers(UserFilter filter) {
+        Objects.requireNonNull(filter, "Filter must not be null");
+        Integer minAge = filter.getMinAge();
+        Integer maxAge = filter.getMaxAge();
+        if ((minAge != null && minAge < 0) || (maxAge != null && maxAge < 0)) {
+            throw new IllegalArgumentException("Age must not be negative");
+        }
+        if (minAge != null && maxAge != null && minAge > maxAge) {
+            throw new IllegalArgumentException("Minimum age must not exceed maximum age");
+        }
+        int limit = filter.getLimit() == null ? DEFAULT_FILTER_LIMIT : filter.getLimit();
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxPageSize);
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate bornAfter = maxAge == null ? null : today.minusYears(maxAge + 1L);
+        LocalDate bornBefore = minAge == null ? null : today.minusYears(minAge).plusDays(1);
+        UserQuery query = new UserQuery(bornAfter, bornBefore, blankToNull(filter.getEmailDomain()),
+                blankToNull(filter.getLastNamePrefix()), filter.getHasPhoneNumber(), filter.getHasAddress());
+        return userRepository.query(query, limit);
+    }
+
+    /**
+     * Streams all users straight from the repository.
+     *
+     * @return Stream of users
+     */
+    @Override
+    public Stream<User> streamAllUsers() {
+        return userRepository.stream();
+    }
+
+    /**
+     * Creates a new {@link User}, leaving the choice of its ID to the repository.
      *
      * @param userDTO The user data to create the new user
      * @return The newly created user
@@ -63,17 +268,8 @@ public class UserServiceImpl implements UserService {
     @Override
     public User createUser(UserDto userDTO) {
 
-        User user = userMapper.toEntity(userDTO);
-
-        var birthDate = user.getBirthDate();
-        var currentDate = LocalDate.now();
-        var ageDifference = Period.between(birthDate, currentDate);
-
-        if (ageDifference.getYears() < userMinAge) {
-            throw new IllegalArgumentException("User must be at least " + userMinAge + " years old");
-        }
-        userRepository.save(user);
-        return user;
+        User user = toNewUser(userDTO);
+        return write(() -> userRepository.save(user));
     }
 
     /**
@@ -86,6 +282,25 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public User updateUser(Long id, UserDto userDTO) {
+        return update(id, userDTO, null);
+    }
+
+    /**
+     * Updates an existing {@link User} only if it is still at the given version.
+     *
+     * @param id              The ID of the {@link User} to be updated
+     * @param userDTO         The updated {@link User} data ({@link UserDto})
+     * @param expectedVersion The version the stored {@link User} must be at
+     * @return The updated {@link User}
+     * @throws IllegalArgumentException     if the {@link User} with the specified ID does not exist
+     * @throws UserVersionConflictException if the {@link User} has been changed since that version
+     */
+    @Override
+    public User updateUser(Long id, UserDto userDTO, long expectedVersion) {
+        return update(id, userDTO, expectedVersion);
+    }
+
+    private User update(Long id, UserDto userDTO, Long expectedVersion) {
 
         Objects.requireNonNull(userDTO, "UserDto must not be null");
         var exists = userRepository.existsById(id);
@@ -94,7 +309,7 @@ public class UserServiceImpl implements UserService {
         }
 
         User updatedUser = userMapper.toEntity(userDTO);
-        return userRepository.update(id,updatedUser);
+        return write(() -> userRepository.update(id, updatedUser, expectedVersion));
     }
     /**
      * Deletes a {@link User} by email.
@@ -104,10 +319,60 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public void deleteUser(String email) {
-        var isDeleted = userRepository.deleteByEmail(email);
-        if (!isDeleted){
-            throw new IllegalArgumentException("User with email: " + email + " doesn't exists");
+        write(() -> delete(email));
+    }
+
+    /**
+     * Creates a new {@link User} without waiting for the write.
+     *
+     * @param userDTO The user data to create the new user
+     * @param durable Whether to acknowledge the write only once it has been forced to disk
+     * @return A future of the newly created user
+     */
+    @Override
+    public CompletableFuture<User> createUserAsync(UserDto userDTO, boolean durable) {
+        User user;
+        try {
+            user = toNewUser(userDTO);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return writeAsync(() -> userRepository.save(user), durable);
+    }
+
+    /**
+     * Updates an existing {@link User} without waiting for the write.
+     *
+     * @param id              The ID of the {@link User} to be updated
+     * @param userDTO         The updated {@link User} data ({@link UserDto})
+     * @param expectedVersion The version the stored {@link User} must be at, or null for any version
+     * @param durable         Whether to acknowledge the write only once it has been forced to disk
+     * @return A future of the updated user
+     */
+    @Override
+    public CompletableFuture<User> updateUserAsync(Long id, UserDto userDTO, Long expectedVersion, boolean durable) {
+        User updatedUser;
+        try {
+            updatedUser = userMapper.toEntity(Objects.requireNonNull(userDTO, "UserDto must not be null"));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return writeAsync(() -> userRepository.update(id, updatedUser, expectedVersion), durable);
+    }
+
+    /**
+     * Deletes a {@link User} by email without waiting for the write.
+     *
+     * @param email   The email of the {@link User} to be deleted
+     * @param durable Whether to acknowledge the write only once it has been forced to disk
+     * @return A future completed once the user is deleted
+     */
+    @Override
+    public CompletableFuture<Void> deleteUserAsync(String email, boolean durable) {
+        return writeAsync(() -> {
+            delete(email);
+            return null;
+        }, durable);
     }
     /**
      * Retrieves users within a specified birth date range.
@@ -122,14 +387,284 @@ public class UserServiceImpl implements UserService {
         if (fromDate.isAfter(toDate) || fromDate.equals(toDate)){
             throw new IllegalArgumentException("Wrong date range");
         }
-        List<User> users = userRepository.getUsers();
-        List<User> usersInRange = new ArrayList<>();
-        for (User user : users) {
-            if (user.getBirthDate().isAfter(fromDate) && user.getBirthDate().isBefore(toDate)) {
-                usersInRange.add(user);
-                System.out.println(user.getBirthDate());
+        return userRepository.findByBirthDateAfterAndBirthDateBefore(fromDate, toDate);
+    }
+
+    /**
+     * Retrieves users within a specified birth date range as a cached JSON array.
+     *
+     * @param fromDate The start date of the range
+     * @param toDate   The end date of the range
+     * @return The serialized users and the version they were read at
+     * @throws IllegalArgumentException if the range is empty
+     */
+    @Override
+    public CachedResponse getUsersByBirthDateRangeJson(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate.isAfter(toDate) || fromDate.equals(toDate)){
+            throw new IllegalArgumentException("Wrong date range");
+        }
+        return responseCache.get("birthDate:" + fromDate + ':' + toDate, userRepository.version(),
+                () -> userRepository.streamByBirthDateAfterAndBirthDateBefore(fromDate, toDate));
+    }
+
+    /**
+     * Applies a batch of operations, validating and mapping all of them before locking out other writers once.
+     *
+     * @param operations The operations to apply
+     * @return Per-operation results in input order
+     * @throws IllegalArgumentException if the batch exceeds the maximum batch size
+     */
+    @Override
+    public List<UserBatchResult> applyBatch(List<UserBatchOperation> operations) {
+        Objects.requireNonNull(operations, "Operations must not be null");
+        if (operations.size() > maxBatchSize) {
+            throw batchTooLarge();
+        }
+
+        int size = operations.size();
+        User[] entities = new User[size];
+        UserBatchResult[] results = new UserBatchResult[size];
+        for (int i = 0; i < size; i++) {
+            try {
+                entities[i] = prepareBatchOperation(operations.get(i));
+            } catch (IllegalArgumentException e) {
+                results[i] = UserBatchResult.failed(i, e.getMessage());
+            }
+        }
+
+        userRepository.executeInBatch(() -> {
+            for (int i = 0; i < size; i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                try {
+                    results[i] = applyBatchOperation(i, operations.get(i), entities[i]);
+                } catch (IllegalArgumentException e) {
+                    results[i] = UserBatchResult.failed(i, e.getMessage());
+                }
+            }
+            return null;
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Collects a batch of operations from a lazy source, failing as soon as it grows past the
+     * maximum batch size, and applies it.
+     *
+     * @param operations The operations to apply
+     * @return Per-operation results in input order
+     * @throws IllegalArgumentException if the batch exceeds the maximum batch size
+     */
+    @Override
+    public List<UserBatchResult> applyBatch(Iterator<UserBatchOperation> operations) {
+        Objects.requireNonNull(operations, "Operations must not be null");
+        List<UserBatchOperation> batch = new ArrayList<>();
+        while (operations.hasNext()) {
+            if (batch.size() == maxBatchSize) {
+                throw batchTooLarge();
+            }
+            batch.add(operations.next());
+        }
+        return applyBatch(batch);
+    }
+
+    /**
+     * Imports users chunk by chunk, locking out other writers once per chunk.
+     *
+     * @param users Iterator over the users to create
+     * @return Summary of the import
+     */
+    @Override
+    public UserImportResult importUsers(Iterator<User> users) {
+        UserImportResult result = new UserImportResult(0, 0, new ArrayList<>());
+        List<User> chunk = new ArrayList<>(importChunkSize);
+        try {
+            while (users.hasNext()) {
+                try {
+                    User user = users.next();
+                    validateAge(user);
+                    chunk.add(user);
+                } catch (IllegalArgumentException e) {
+                    recordImportFailure(result, e.getMessage());
+                }
+                if (chunk.size() >= importChunkSize) {
+                    importChunk(chunk, result);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // Everything read before the broken input is applied, so the result says exactly where it stopped
+            importChunk(chunk, result);
+            result.getErrors().add(e.getCause().getMessage());
+            throw new UserImportAbortedException(result, e.getCause());
+        }
+        importChunk(chunk, result);
+        return result;
+    }
+
+    /**
+     * Reports the index build progress of the user store.
+     *
+     * @return The current {@link UserStoreStatus}
+     */
+    @Override
+    public UserStoreStatus getStoreStatus() {
+        return new UserStoreStatus(userRepository.indexesReady(), userRepository.count(),
+                userRepository.indexedCount());
+    }
+
+    /**
+     * Reads the changes of the user store after a cursor of the change feed.
+     *
+     * @param since The sequence of the last change seen, or null to obtain the current cursor
+     * @param limit The maximum number of changes to return, or null for the maximum batch size
+     * @return A future of the changes after {@code since}
+     * @throws IllegalArgumentException if the cursor is negative or the limit is out of range
+     */
+    @Override
+    public CompletableFuture<UserChangeBatch> pollChanges(Long since, Integer limit) {
+        if (since == null) {
+            return CompletableFuture.completedFuture(new UserChangeBatch(List.of(), changeLog.lastSequence()));
+        }
+        if (since < 0) {
+            throw new IllegalArgumentException("Cursor must not be negative");
+        }
+        return changeLog.poll(since, limit == null ? changeLog.maxBatch() : limit);
+    }
+
+    private void importChunk(List<User> chunk, UserImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        userRepository.executeInBatch(() -> {
+            for (User user : chunk) {
+                try {
+                    userRepository.save(user);
+                    result.setImported(result.getImported() + 1);
+                } catch (IllegalArgumentException e) {
+                    recordImportFailure(result, e.getMessage());
+                }
+            }
+            return null;
+        });
+        chunk.clear();
+    }
+
+    private IllegalArgumentException batchTooLarge() {
+        return new IllegalArgumentException("Batch must not contain more than " + maxBatchSize + " operations");
+    }
+
+    private static void recordImportFailure(UserImportResult result, String error) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_IMPORT_ERRORS) {
+            result.getErrors().add(error);
+        }
+    }
+
+    private User prepareBatchOperation(UserBatchOperation operation) {
+        if (operation == null || operation.getOp() == null) {
+            throw new IllegalArgumentException("Operation type is required");
+        }
+        switch (operation.getOp()) {
+            case CREATE -> {
+                if (operation.getUser() == null) {
+                    throw new IllegalArgumentException("User is required");
+                }
+                User user = userMapper.toEntity(operation.getUser()).withId(null);
+                validateAge(user);
+                return user;
+            }
+            case UPDATE -> {
+                if (operation.getId() == null || operation.getUser() == null) {
+                    throw new IllegalArgumentException("ID and user are required");
+                }
+                return userMapper.toEntity(operation.getUser());
+            }
+            default -> {
+                if (operation.getEmail() == null) {
+                    throw new IllegalArgumentException("Email is required");
+                }
+                return null;
+            }
+        }
+    }
+
+    private UserBatchResult applyBatchOperation(int index, UserBatchOperation operation, User entity) {
+        return switch (operation.getOp()) {
+            case CREATE -> new UserBatchResult(index, UserBatchResult.Status.CREATED,
+                    userRepository.save(entity).getId(), null);
+            case UPDATE -> new UserBatchResult(index, UserBatchResult.Status.UPDATED,
+                    userRepository.update(operation.getId(), entity).getId(), null);
+            case DELETE -> {
+                if (!userRepository.deleteByEmail(operation.getEmail())) {
+                    throw new IllegalArgumentException("User with email: " + operation.getEmail() + " doesn't exists");
+                }
+                yield new UserBatchResult(index, UserBatchResult.Status.DELETED, null, null);
             }
+        };
+    }
+
+    private User toNewUser(UserDto userDTO) {
+        User user = userMapper.toEntity(userDTO).withId(null);
+        validateAge(user);
+        return user;
+    }
+
+    private boolean delete(String email) {
+        var isDeleted = userRepository.deleteByEmail(email);
+        if (!isDeleted){
+            throw new IllegalArgumentException("User with email: " + email + " doesn't exists");
+        }
+        return true;
+    }
+
+    /**
+     * Applies a write on the calling thread, or queues it in the write pipeline and waits for it.
+     */
+    private <T> T write(Supplier<T> write) {
+        if (writePipeline == null) {
+            return write.get();
+        }
+        try {
+            return writePipeline.submit(write, false).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a write in the write pipeline, or applies it on the calling thread if there is none.
+     */
+    private <T> CompletableFuture<T> writeAsync(Supplier<T> write, boolean durable) {
+        if (writePipeline != null) {
+            return writePipeline.submit(write, durable);
+        }
+        try {
+            T result = write.get();
+            if (durable) {
+                userRepository.awaitDurable();
+            }
+            return CompletableFuture.completedFuture(result);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private void validateAge(User user) {
+        if (user.getBirthDate() == null) {
+            throw new IllegalArgumentException("Birth date is required");
+        }
+        var ageDifference = Period.between(user.getBirthDate(), LocalDate.now());
+
+        if (ageDifference.getYears() < userMinAge) {
+            throw new IllegalArgumentException("User must be at least " + userMinAge + " years old");
         }
-        return usersInRange;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,201 @@
+package com.example.test.service.pipeline;
+
+import com.example.test.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Applies user writes from any number of threads on a single writer thread, in batches.
+ *
+ * <p>Enabled with {@code user.write-pipeline.enabled=true}. Writes are queued in a bounded queue of
+ * {@code user.write-pipeline.queue-capacity} entries; submitters block while it is full. The writer
+ * takes up to {@code user.write-pipeline.max-batch} queued writes at a time and applies them inside
+ * one {@link UserRepository#executeInBatch}, so the write stripes are taken and the journal commit
+ * awaited once per batch instead of once per write. A batch that contains a durable write is
+ * followed by a single {@link UserRepository#awaitDurable()} before any of its writes is
+ * acknowledged; writes queued meanwhile form the next, larger batch.</p>
+ *
+ * <p>Futures are completed on the writer thread. Dependent actions should use the asynchronous
+ * variants of {@link CompletableFuture} so that they do not hold up later batches.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "user.write-pipeline.enabled", havingValue = "true")
+public class UserWritePipeline {
+
+    private final UserRepository userRepository;
+    private final BlockingQueue<Write<?>> queue;
+    private final int maxBatch;
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs the pipeline from {@code user.write-pipeline.*} properties and starts its writer thread.
+     *
+     * @param userRepository The repository to apply writes to
+     * @param env            The Environment object
+     */
+    @Autowired
+    public UserWritePipeline(UserRepository userRepository, Environment env) {
+        this(userRepository, env.getProperty("user.write-pipeline.queue-capacity", Integer.class, 10_000),
+                env.getProperty("user.write-pipeline.max-batch", Integer.class, 500));
+    }
+
+    /**
+     * Constructs the pipeline and starts its writer thread.
+     *
+     * @param userRepository The repository to apply writes to
+     * @param queueCapacity  The maximum number of queued writes
+     * @param maxBatch       The maximum number of writes applied in one batch
+     */
+    public UserWritePipeline(UserRepository userRepository, int queueCapacity, int maxBatch) {
+        this.userRepository = userRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::run, "user-write-pipeline");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a write, waiting for space if the queue is full.
+     *
+     * @param write   The write, which runs on the writer thread while every write stripe is held
+     * @param durable Whether to acknowledge the write only once it has been forced to disk
+     * @param <T>     The type of the write result
+     * @return A future of the write result, completed exceptionally with whatever the write threw
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> write, boolean durable) {
+        Write<T> queued = new Write<>(write, durable);
+        if (closed) {
+            queued.future.completeExceptionally(new IllegalStateException("Write pipeline is closed"));
+            return queued.future;
+        }
+        try {
+            queue.put(queued);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued.future.completeExceptionally(e);
+        }
+        return queued.future;
+    }
+
+    /**
+     * Returns the number of queued writes.
+     *
+     * @return The queue length
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to be applied.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Writes queued by submitters that raced with closing
+        List<Write<?>> rejected = new ArrayList<>();
+        queue.drainTo(rejected);
+        for (Write<?> write : rejected) {
+            write.future.completeExceptionally(new IllegalStateException("Write pipeline is closed"));
+        }
+    }
+
+    private void run() {
+        List<Write<?>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            Write<?> first;
+            try {
+                // Once closed, the writer is interrupted and only drains what is left
+                first = closed ? queue.poll() : queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<Write<?>> batch) {
+        boolean durable = false;
+        try {
+            userRepository.executeInBatch(() -> {
+                for (Write<?> write : batch) {
+                    write.run();
+                }
+                return null;
+            });
+            for (Write<?> write : batch) {
+                durable |= write.durable;
+            }
+            if (durable) {
+                userRepository.awaitDurable();
+            }
+        } catch (RuntimeException e) {
+            // The writes are applied, but their commit could not be confirmed
+            log.error("Failed to commit a batch of {} user writes", batch.size(), e);
+            for (Write<?> write : batch) {
+                write.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Write<?> write : batch) {
+            write.acknowledge();
+        }
+    }
+
+    private static final class Write<T> {
+
+        private final Supplier<T> write;
+        private final boolean durable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private RuntimeException failure;
+
+        private Write(Supplier<T> write, boolean durable) {
+            this.write = write;
+            this.durable = durable;
+        }
+
+        private void run() {
+            try {
+                result = write.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private void acknowledge() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.test;
+
+import com.example.test.model.User;
+
+import java.time.LocalDate;
+
+/**
+ * Builds the {@link User} fixtures shared by the tests.
+ */
+public final class TestUsers {
+
+    private TestUsers() {
+    }
+
+    /**
+     * Builds a user born on 2000-01-01.
+     *
+     * @param id    The ID, or null to have the repository assign one
+     * @param email The email
+     * @return The user
+     */
+    public static User user(Long id, String email) {
+        return user(id, email, LocalDate.of(2000, 1, 1));
+    }
+
+    /**
+     * Builds a user with the given birth date.
+     *
+     * @param id        The ID, or null to have the repository assign one
+     * @param email     The email
+     * @param birthDate The birth date
+     * @return The user
+     */
+    public static User user(Long id, String email, LocalDate birthDate) {
+        return new User(id, email, "John", "Doe", birthDate, "address", "testnum");
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.test.controller;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserDto;
+import com.example.test.service.ReactiveUserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReactiveUserController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class ReactiveUserControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveUserService reactiveUserService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String url = "/api/v1/reactive/users";
+
+    private static final User validUser = new User(1L, "test@example.com", "John", "Doe",
+            LocalDate.of(2004, 4, 17), "address", "testnum");
+
+    @Test
+    public void testGetAllUsersShouldStreamNdjson() throws Exception {
+        given(reactiveUserService.getAllUsers()).willReturn(Flux.just(validUser, validUser));
+
+        MvcResult result = mockMvc.perform(get(url).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(validUser.getEmail(), objectMapper.readTree(lines[0]).get("email").asText());
+    }
+
+    @Test
+    public void testGetUsersByInvalidDateRangeShouldReturnBadRequest() throws Exception {
+        given(reactiveUserService.getUsersByBirthDateRange(any(LocalDate.class), any(LocalDate.class)))
+                .willReturn(Flux.error(new IllegalArgumentException("Wrong date range")));
+
+        MvcResult result = mockMvc.perform(get(url + "/birthDate")
+                        .param("fromDate", "2024-12-31")
+                        .param("toDate", "2024-01-01")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testCreateUserShouldReturnCreated() throws Exception {
+        given(reactiveUserService.createUser(any(UserDto.class))).willReturn(Mono.just(validUser));
+
+        MvcResult result = mockMvc.perform(post(url)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validUser)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.email").value(validUser.getEmail()));
+    }
+}
@@ -1,9 +1,27 @@
 package com.example.test.controller;
 
+import com.example.test.config.JacksonConfig;
+import com.example.test.mapper.UserMapper;
 import com.example.test.model.User;
+import com.example.test.model.dto.UserBatchOperation;
+import com.example.test.model.dto.UserBatchResult;
+import com.example.test.model.dto.UserChange;
+import com.example.test.model.dto.UserChangeBatch;
 import com.example.test.model.dto.UserDto;
+import com.example.test.model.dto.UserFilter;
+import com.example.test.model.dto.UserImportResult;
+import com.example.test.model.dto.UserStoreStatus;
+import com.example.test.repository.UserRepository;
+import com.example.test.repository.UserVersionConflictException;
+import com.example.test.service.UserImportAbortedException;
 import com.example.test.service.UserService;
+import com.example.test.service.cache.CachedResponse;
+import com.example.test.service.cache.UserJsonCache;
+import com.example.test.service.changes.UserChangesExpiredException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
@@ -12,17 +30,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -30,6 +60,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(UserController.class)
 @AutoConfigureMockMvc(addFilters = false)
 @ExtendWith(MockitoExtension.class)
+@Import({UserMapper.class, JacksonConfig.class, UserJsonCache.class})
 public class UserControllerTest {
 
     @Autowired
@@ -38,6 +69,9 @@ public class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserRepository userRepository;
+
     @Autowired
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -75,15 +109,343 @@ public class UserControllerTest {
     public void testGetAllUsersShouldReturnListOfUsers() throws Exception {
         List<User> userList = new ArrayList<>();
         userList.add(validUser);
-        given(userService.getAllUsers()).willReturn(userList);
+        given(userService.getAllUsersJson()).willReturn(new CachedResponse(0, 1, objectMapper.writeValueAsBytes(userList)));
 
-        mockMvc.perform(get(url))
+        MvcResult result = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$[0].email").value(validUser.getEmail()))
                 .andExpect(jsonPath("$[0].firstName").value(validUser.getFirstName()));
     }
 
+    @Test
+    public void testGetAllUsersWithCurrentETagShouldReturnNotModified() throws Exception {
+        given(userService.getAllUsersJson()).willReturn(new CachedResponse(36, 7, out -> {
+            throw new AssertionError("A current ETag must not run the query");
+        }));
+
+        mockMvc.perform(get(url).header("If-None-Match", "W/\"10-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"10-7\""))
+                .andExpect(content().bytes(new byte[0]));
+
+        given(userService.getAllUsersJson()).willReturn(new CachedResponse(36, 7, objectMapper.writeValueAsBytes(List.of(validUser))));
+        mockMvc.perform(get(url).header("If-None-Match", "W/\"10-6\""))
+                .andExpect(request().asyncStarted());
+        // After a restart the version starts over, so a tag from the previous process must not match.
+        mockMvc.perform(get(url).header("If-None-Match", "W/\"11-7\""))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    public void testGetUserByIdShouldReturnUserOrNotFound() throws Exception {
+        given(userService.getUserById(1L)).willReturn(Optional.of(validUser));
+        given(userService.getUserById(2L)).willReturn(Optional.empty());
+
+        mockMvc.perform(get(url + "/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value(validUser.getEmail()));
+        mockMvc.perform(get(url + "/2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetUserByEmailShouldReturnUser() throws Exception {
+        given(userService.getUserByEmail("test@example.com")).willReturn(Optional.of(validUser));
+
+        mockMvc.perform(get(url).param("email", "test@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    public void testGetUsersByIdsShouldReturnFoundUsers() throws Exception {
+        given(userService.getUsersByIds(List.of(1L, 2L, 3L))).willReturn(List.of(validUser));
+
+        mockMvc.perform(get(url).param("ids", "1,2,3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].email").value(validUser.getEmail()));
+    }
+
+    @Test
+    public void testSearchUsersShouldReturnMatches() throws Exception {
+        given(userService.searchUsers("john", 20)).willReturn(List.of(validUser));
+
+        MvcResult result = mockMvc.perform(get(url + "/search").param("q", "john"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].firstName").value(validUser.getFirstName()));
+    }
+
+    @Test
+    public void testFilterUsersShouldBindFilterParameters() throws Exception {
+        given(userService.filterUsers(ArgumentMatchers.argThat(filter -> filter != null
+                && filter.getMinAge() == 18 && "example.com".equals(filter.getEmailDomain())
+                && Boolean.TRUE.equals(filter.getHasPhoneNumber()) && filter.getMaxAge() == null)))
+                .willReturn(List.of(validUser));
+
+        mockMvc.perform(get(url + "/filter")
+                        .param("minAge", "18")
+                        .param("emailDomain", "example.com")
+                        .param("hasPhoneNumber", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].email").value(validUser.getEmail()));
+    }
+
+    @Test
+    public void testGetUsersPageShouldReturnNextCursorWhenPageIsFull() throws Exception {
+        given(userService.getUsersPage(null, 1)).willReturn(List.of(validUser));
+
+        MvcResult result = mockMvc.perform(get(url).param("limit", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "1"))
+                .andExpect(jsonPath("$[0].email").value(validUser.getEmail()));
+    }
+
+    @Test
+    public void testGetUsersPageShouldNegotiateSmile() throws Exception {
+        given(userService.getUsersPage(null, 2)).willReturn(List.of(validUser));
+
+        MvcResult result = mockMvc.perform(get(url).param("limit", "2").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andReturn();
+
+        JsonNode users = objectMapper.copyWith(new SmileFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertEquals(validUser.getEmail(), users.get(0).get("email").asText());
+    }
+
+    @Test
+    public void testGetUsersPageWithInvalidLimitShouldReturnBadRequest() throws Exception {
+        given(userService.getUsersPage(5L, 0)).willThrow(new IllegalArgumentException("Limit must be positive"));
+
+        mockMvc.perform(get(url).param("limit", "0").param("after", "5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStreamAllUsersShouldWriteNdjson() throws Exception {
+        given(userService.streamAllUsers()).willReturn(Stream.of(validUser, validUser));
+
+        MvcResult result = mockMvc.perform(get(url).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(validUser.getEmail(), objectMapper.readTree(lines[1]).get("email").asText());
+    }
+
+    @Test
+    public void testPollChangesShouldReturnChangesAfterCursor() throws Exception {
+        UserChange change = new UserChange(8L, UserChange.Type.UPDATED, 1L, validUser.withVersion(1L));
+        given(userService.pollChanges(7L, null))
+                .willReturn(CompletableFuture.completedFuture(new UserChangeBatch(List.of(change), 8L)));
+
+        MvcResult result = mockMvc.perform(get(url + "/changes").param("since", "7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastSequence").value(8))
+                .andExpect(jsonPath("$.changes[0].type").value("UPDATED"))
+                .andExpect(jsonPath("$.changes[0].user.email").value(validUser.getEmail()));
+    }
+
+    @Test
+    public void testPollChangesWithEvictedCursorShouldReturnGone() throws Exception {
+        given(userService.pollChanges(3L, null))
+                .willReturn(CompletableFuture.failedFuture(new UserChangesExpiredException(3L, 10L)));
+
+        MvcResult result = mockMvc.perform(get(url + "/changes").param("since", "3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void testStreamChangesWithEvictedCursorShouldSendExpiredEvent() throws Exception {
+        UserChange change = new UserChange(4L, UserChange.Type.DELETED, 1L, null);
+        given(userService.pollChanges(3L, null))
+                .willReturn(CompletableFuture.completedFuture(new UserChangeBatch(List.of(change), 4L)));
+        given(userService.pollChanges(4L, null))
+                .willReturn(CompletableFuture.failedFuture(new UserChangesExpiredException(4L, 10L)));
+
+        MvcResult result = mockMvc.perform(get(url + "/changes").param("since", "3")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("event:changes\n"));
+        assertTrue(body.contains("event:expired\n"));
+    }
+
+    @Test
+    public void testStreamChangesShouldResumeAfterLastEventId() throws Exception {
+        UserChange change = new UserChange(6L, UserChange.Type.DELETED, 1L, null);
+        given(userService.pollChanges(5L, null))
+                .willReturn(CompletableFuture.completedFuture(new UserChangeBatch(List.of(change), 6L)));
+        given(userService.pollChanges(6L, null)).willReturn(new CompletableFuture<>());
+
+        MvcResult result = mockMvc.perform(get(url + "/changes").param("since", "2")
+                        .header("Last-Event-ID", "5")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("id:6\n"));
+        assertTrue(body.contains("event:changes\n"));
+        assertTrue(body.contains("\"type\":\"DELETED\""));
+    }
+
+    @Test
+    public void testApplyBatchShouldReturnPerItemResults() throws Exception {
+        given(userService.applyBatch(ArgumentMatchers.<List<UserBatchOperation>>any())).willReturn(List.of(
+                new UserBatchResult(0, UserBatchResult.Status.CREATED, 1L, null),
+                UserBatchResult.failed(1, "User not found")));
+
+        mockMvc.perform(post(url + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(
+                                new UserBatchOperation(UserBatchOperation.Type.CREATE, null, null, validUserDto),
+                                new UserBatchOperation(UserBatchOperation.Type.UPDATE, 999L, null, validUserDto)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[1].status").value("FAILED"));
+    }
+
+    @Test
+    public void testGetUserByIdShouldNegotiateSmile() throws Exception {
+        given(userService.getUserById(1L)).willReturn(Optional.of(validUser));
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+
+        MvcResult result = mockMvc.perform(get(url + "/1").accept(smile))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(smile))
+                .andReturn();
+
+        User user = objectMapper.copyWith(new SmileFactory())
+                .readValue(result.getResponse().getContentAsByteArray(), User.class);
+        assertEquals(validUser.getEmail(), user.getEmail());
+        assertEquals(validUser.getBirthDate(), user.getBirthDate());
+        mockMvc.perform(get(url + "/1"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testGetAllUsersShouldNegotiateCborWithoutJsonCache() throws Exception {
+        given(userService.getAllUsers()).willReturn(List.of(validUser));
+
+        MvcResult result = mockMvc.perform(get(url).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        JsonNode users = objectMapper.copyWith(new CBORFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertEquals(validUser.getEmail(), users.get(0).get("email").asText());
+        verify(userService, never()).getAllUsersJson();
+    }
+
+    @Test
+    public void testApplyBatchShouldAcceptCbor() throws Exception {
+        given(userService.applyBatch(ArgumentMatchers.<List<UserBatchOperation>>argThat(operations -> operations.size() == 1)))
+                .willReturn(List.of(new UserBatchResult(0, UserBatchResult.Status.DELETED, null, null)));
+
+        mockMvc.perform(post(url + "/batch")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(objectMapper.copyWith(new CBORFactory()).writeValueAsBytes(List.of(
+                                new UserBatchOperation(UserBatchOperation.Type.DELETE, null, "a@example.com", null)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("DELETED"));
+    }
+
+    @Test
+    public void testApplyNdjsonBatchShouldParseOneOperationPerLine() throws Exception {
+        given(userService.applyBatch(ArgumentMatchers.<Iterator<UserBatchOperation>>any())).willAnswer(invocation -> {
+            Iterator<UserBatchOperation> operations = invocation.getArgument(0);
+            List<UserBatchResult> results = new ArrayList<>();
+            while (operations.hasNext()) {
+                assertEquals(UserBatchOperation.Type.DELETE, operations.next().getOp());
+                results.add(new UserBatchResult(results.size(), UserBatchResult.Status.DELETED, null, null));
+            }
+            return results;
+        });
+
+        mockMvc.perform(post(url + "/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"op\":\"DELETE\",\"email\":\"a@example.com\"}\n"
+                                + "{\"op\":\"DELETE\",\"email\":\"b@example.com\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].status").value("DELETED"));
+    }
+
+    @Test
+    public void testImportCsvUsersShouldStreamRecordsToService() throws Exception {
+        given(userService.importUsers(any())).willAnswer(invocation -> {
+            Iterator<User> users = invocation.getArgument(0);
+            long count = 0;
+            while (users.hasNext()) {
+                users.next();
+                count++;
+            }
+            return new UserImportResult(count, 0, List.of());
+        });
+
+        mockMvc.perform(post(url + "/import")
+                        .contentType("text/csv")
+                        .content("id,email,firstName,lastName,birthDate\n"
+                                + "1,a@example.com,John,Doe,2000-01-01\n"
+                                + "2,b@example.com,Jane,Doe,2000-01-02\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+    }
+
+    @Test
+    public void testImportJsonUsersWithMalformedJsonShouldReturnBadRequestWithResultSoFar() throws Exception {
+        given(userService.importUsers(any())).willAnswer(invocation -> {
+            Iterator<User> users = invocation.getArgument(0);
+            long count = 0;
+            try {
+                while (users.hasNext()) {
+                    users.next();
+                    count++;
+                }
+            } catch (UncheckedIOException e) {
+                throw new UserImportAbortedException(new UserImportResult(count, 0,
+                        new ArrayList<>(List.of(e.getCause().getMessage()))), e.getCause());
+            }
+            return new UserImportResult(count, 0, List.of());
+        });
+
+        mockMvc.perform(post(url + "/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"id\":1,\"email\":\"a@example.com\"}\n{\"id\":2,\"email\":}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors.length()").value(1));
+    }
+
     @Test
     public void testUpdateUserShouldReturnUpdatedUser() throws Exception {
         given(userService.updateUser(any(Long.class), any(UserDto.class))).willReturn(validUser);
@@ -98,6 +460,31 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.email").value(validUser.getEmail()))
                 .andExpect(jsonPath("$.firstName").value(validUser.getFirstName()));
     }
+    @Test
+    public void testPatchUserWithStaleIfMatchShouldReturnPreconditionFailed() throws Exception {
+        given(userService.updateUser(ArgumentMatchers.eq(1L), any(UserDto.class), ArgumentMatchers.eq(3L)))
+                .willThrow(new UserVersionConflictException(1L, 3L, 4L));
+        given(userService.updateUser(ArgumentMatchers.eq(1L), any(UserDto.class), ArgumentMatchers.eq(4L)))
+                .willReturn(validUser.withVersion(5L));
+
+        mockMvc.perform(patch(url + "/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validUserDto)))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(patch(url + "/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validUserDto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""));
+        mockMvc.perform(patch(url + "/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "W/\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validUserDto)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testUpdateUserWithInvalidIdShouldReturnNotFound() throws Exception {
         given(userService.updateUser(ArgumentMatchers.eq(999L), any(UserDto.class))).willThrow(new IllegalArgumentException());
@@ -136,11 +523,15 @@ public class UserControllerTest {
     public void testGetUsersByBirthDateRangeShouldReturnListOfUsers() throws Exception {
         List<User> userList = new ArrayList<>();
         userList.add(validUser);
-        given(userService.getUsersByBirthDateRange(any(LocalDate.class), any(LocalDate.class))).willReturn(userList);
+        given(userService.getUsersByBirthDateRangeJson(any(LocalDate.class), any(LocalDate.class)))
+                .willReturn(new CachedResponse(0, 1, objectMapper.writeValueAsBytes(userList)));
 
-        mockMvc.perform(get(url + "/birthDate")
+        MvcResult result = mockMvc.perform(get(url + "/birthDate")
                         .param("fromDate", "2024-01-01")
                         .param("toDate", "2024-12-31"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$[0].email").value(validUser.getEmail()))
@@ -148,7 +539,7 @@ public class UserControllerTest {
     }
     @Test
     public void testGetUsersByInvalidDateRangeShouldReturnBadRequest() throws Exception {
-        given(userService.getUsersByBirthDateRange(any(LocalDate.class), any(LocalDate.class)))
+        given(userService.getUsersByBirthDateRangeJson(any(LocalDate.class), any(LocalDate.class)))
                 .willThrow(new IllegalArgumentException("Invalid date range"));
 
         mockMvc.perform(get(url + "/birthDate")
@@ -156,4 +547,15 @@ public class UserControllerTest {
                         .param("toDate", "2024-01-01"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    public void testGetStoreStatusShouldReturnIndexProgress() throws Exception {
+        given(userService.getStoreStatus()).willReturn(new UserStoreStatus(false, 10, 4));
+
+        mockMvc.perform(get(url + "/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.indexesReady").value(false))
+                .andExpect(jsonPath("$.users").value(10))
+                .andExpect(jsonPath("$.indexedUsers").value(4));
+    }
 }
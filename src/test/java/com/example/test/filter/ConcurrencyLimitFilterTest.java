@@ -0,0 +1,58 @@
+package com.example.test.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(new MockEnvironment()
+            .withProperty("user.api.concurrency.max-in-flight", "1")
+            .withProperty("user.api.concurrency.max-queue-wait-ms", "10")
+            .withProperty("user.api.concurrency.retry-after-seconds", "2"),
+            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+    @Test
+    public void testRequestsOverLimitShouldBeRejectedWithTooManyRequests() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/users"), new MockHttpServletResponse(),
+                        (request, response) -> {
+                            entered.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/users"), rejected, (request, response) -> fail());
+        assertEquals(429, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+
+        MockHttpServletResponse health = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), health, (request, response) -> { });
+        assertEquals(200, health.getStatus());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(1, filter.availablePermits());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.test.mapper;
+
+import com.example.test.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserMapperTest {
+
+    private final UserMapper userMapper = new UserMapper(new ObjectMapper());
+
+    @Test
+    public void testReadJsonRecordsShouldReadArrayAndNdjson() throws Exception {
+        String array = "[{\"id\":1,\"email\":\"a@example.com\",\"birthDate\":\"2000-01-01\",\"extra\":{\"x\":[1]}},"
+                + "{\"id\":2,\"email\":\"b@example.com\"}]";
+        Iterator<User> users = userMapper.readJsonRecords(
+                new ByteArrayInputStream(array.getBytes(StandardCharsets.UTF_8)));
+
+        User first = users.next();
+        assertEquals(1L, first.getId());
+        assertEquals(LocalDate.of(2000, 1, 1), first.getBirthDate());
+        assertEquals("b@example.com", users.next().getEmail());
+        assertFalse(users.hasNext());
+
+        String ndjson = "{\"id\":1}\n{\"id\":2}\n";
+        users = userMapper.readJsonRecords(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1L, users.next().getId());
+        assertEquals(2L, users.next().getId());
+        assertFalse(users.hasNext());
+    }
+
+    @Test
+    public void testReadJsonRecordsShouldSkipPastInvalidRecord() throws Exception {
+        String ndjson = "{\"id\":1,\"birthDate\":\"not-a-date\",\"email\":\"a@example.com\"}\n{\"id\":2}\n";
+        Iterator<User> users = userMapper.readJsonRecords(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IllegalArgumentException.class, users::next);
+        assertEquals(2L, users.next().getId());
+    }
+
+    @Test
+    public void testReadJsonRecordsShouldFailOnMalformedJsonAndCloseParser() throws Exception {
+        String ndjson = "{\"id\":1}\n{\"id\":2,}\n{\"id\":3}\n";
+        UserMapper.JsonRecords users = userMapper.readJsonRecords(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1L, users.next().getId());
+        assertThrows(UncheckedIOException.class, users::next);
+        users.close();
+        assertThrows(UncheckedIOException.class, users::next);
+    }
+
+    @Test
+    public void testReadCsvRecordsShouldHonorHeaderOrderAndQuotes() throws Exception {
+        String csv = "email,id,address\n\"a@example.com\",1,\"Main St, \"\"7\"\"\"\n\nb@example.com,x,\n";
+        Iterator<User> users = userMapper.readCsvRecords(new StringReader(csv));
+
+        User first = users.next();
+        assertEquals(1L, first.getId());
+        assertEquals("Main St, \"7\"", first.getAddress());
+        assertThrows(IllegalArgumentException.class, users::next);
+        assertFalse(users.hasNext());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.test.metrics;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.repository.UserRepository;
+import com.example.test.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class UserOperationMetricsAspectTest {
+
+    private MeterRegistry meterRegistry;
+
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        UserRepository target = new LocalUserRepository();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new UserOperationMetricsAspect(meterRegistry, new MockEnvironment()));
+        userRepository = factory.getProxy();
+        new UserStoreMetrics(userRepository).bindTo(meterRegistry);
+    }
+
+    @Test
+    public void testRepositoryCallsShouldBeTimedByOutcome() {
+        User user = user(1L, "test@example.com");
+        userRepository.save(user);
+        assertThrows(IllegalArgumentException.class, () -> userRepository.save(user));
+        userRepository.findByBirthDateAfterAndBirthDateBefore(LocalDate.of(1999, 1, 1), LocalDate.of(2001, 1, 1));
+
+        assertEquals(1, meterRegistry.get(UserOperationMetricsAspect.TIMER_NAME)
+                .tags("layer", "repository", "operation", "save", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get(UserOperationMetricsAspect.TIMER_NAME)
+                .tags("layer", "repository", "operation", "save", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get("user.store.size").gauge().value());
+        assertTrue(meterRegistry.get("user.store.lookups").tag("source", "index").functionCounter().count() >= 1);
+        assertTrue(meterRegistry.find(UserOperationMetricsAspect.TIMER_NAME).tag("operation", "count").timers().isEmpty());
+    }
+
+    @Test
+    public void testFutureReturningCallsShouldBeTimedOnCompletion() {
+        CompletableFuture<User> created = new CompletableFuture<>();
+        CompletableFuture<Void> deleted = new CompletableFuture<>();
+        UserService target = mock(UserService.class);
+        given(target.createUserAsync(any(), anyBoolean())).willReturn(created);
+        given(target.deleteUserAsync(any(), anyBoolean())).willReturn(deleted);
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addInterface(UserService.class);
+        factory.addAspect(new UserOperationMetricsAspect(meterRegistry, new MockEnvironment()));
+        UserService userService = factory.getProxy();
+
+        assertSame(created, userService.createUserAsync(null, true));
+        assertSame(deleted, userService.deleteUserAsync("test@example.com", true));
+        assertTrue(meterRegistry.find(UserOperationMetricsAspect.TIMER_NAME).tag("layer", "service").timers().isEmpty());
+
+        created.complete(null);
+        deleted.completeExceptionally(new IllegalArgumentException("missing"));
+
+        assertEquals(1, serviceTimer("createUserAsync", "success").count());
+        assertEquals(0, serviceTimer("deleteUserAsync", "success").count());
+        assertEquals(1, serviceTimer("deleteUserAsync", "error").count());
+    }
+
+    private Timer serviceTimer(String operation, String outcome) {
+        return meterRegistry.get(UserOperationMetricsAspect.TIMER_NAME)
+                .tags("layer", "service", "operation", operation, "outcome", outcome).timer();
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.repository.storage.HeapUserRecordStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalUserRepositoryTest {
+
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = new LocalUserRepository();
+    }
+
+    @Test
+    public void testFindByIdShouldReturnSavedUser() {
+        userRepository.save(user(1L, "test@example.com"));
+
+        assertTrue(userRepository.findById(1L).isPresent());
+        assertTrue(userRepository.existsById(1L));
+        assertFalse(userRepository.findById(2L).isPresent());
+        assertFalse(userRepository.findById(null).isPresent());
+    }
+
+    @Test
+    public void testSaveWithoutIdShouldAssignOneAndFindAllShouldReturnIdOrder() {
+        userRepository.save(user(5L, "e@example.com"));
+        User first = userRepository.save(user(null, "a@example.com"));
+        User second = userRepository.save(user(null, "b@example.com"));
+        userRepository.save(user(3L, "c@example.com"));
+
+        assertNotNull(first.getId());
+        assertTrue(second.getId() > first.getId());
+        assertEquals(first, userRepository.findById(first.getId()).orElseThrow());
+        List<Long> ids = userRepository.findAll().stream().map(User::getId).toList();
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertEquals(4, ids.size());
+    }
+
+    @Test
+    public void testSaveWithDuplicateEmailShouldThrow() {
+        userRepository.save(user(1L, "test@example.com"));
+
+        assertThrows(IllegalArgumentException.class, () -> userRepository.save(user(2L, "test@example.com")));
+        assertThrows(IllegalArgumentException.class, () -> userRepository.save(user(1L, "other@example.com")));
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    public void testUpdateEmailShouldMoveEmailIndex() {
+        userRepository.save(user(1L, "old@example.com"));
+        userRepository.save(user(2L, "taken@example.com"));
+
+        User patch = new User().withEmail("new@example.com");
+        userRepository.update(1L, patch);
+
+        assertFalse(userRepository.deleteByEmail("old@example.com"));
+        assertThrows(IllegalArgumentException.class, () -> userRepository.update(1L, patch.withEmail("taken@example.com")));
+        assertTrue(userRepository.deleteByEmail("new@example.com"));
+        assertFalse(userRepository.existsById(1L));
+    }
+
+    @Test
+    public void testUpdateShouldReplaceImmutableUserWithNextVersion() {
+        User saved = userRepository.save(user(1L, "a@example.com"));
+
+        User updated = userRepository.update(1L, new User().withFirstName("Jane"), 0L);
+        assertEquals(1L, updated.getVersion());
+        assertEquals("Jane", updated.getFirstName());
+        assertEquals("a@example.com", updated.getEmail());
+        assertEquals("John", saved.getFirstName());
+        assertEquals(0L, saved.getVersion());
+
+        UserVersionConflictException conflict = assertThrows(UserVersionConflictException.class,
+                () -> userRepository.update(1L, new User().withFirstName("Stale"), 0L));
+        assertEquals(1L, conflict.getCurrentVersion());
+        assertEquals(2L, userRepository.update(1L, new User().withLastName("Roe")).getVersion());
+        assertEquals("Jane", userRepository.findById(1L).orElseThrow().getFirstName());
+    }
+
+    @Test
+    public void testFindByBirthDateRangeShouldUseExclusiveBoundsAndFollowUpdates() {
+        userRepository.save(new User(1L, "a@example.com", "A", "A", LocalDate.of(1990, 1, 1), null, null));
+        userRepository.save(new User(2L, "b@example.com", "B", "B", LocalDate.of(1995, 6, 15), null, null));
+        userRepository.save(new User(3L, "c@example.com", "C", "C", LocalDate.of(2000, 1, 1), null, null));
+
+        List<User> users = userRepository.findByBirthDateAfterAndBirthDateBefore(
+                LocalDate.of(1990, 1, 1), LocalDate.of(2000, 1, 1));
+        assertEquals(1, users.size());
+        assertEquals(2L, users.get(0).getId());
+
+        User patch = new User().withBirthDate(LocalDate.of(1980, 1, 1));
+        userRepository.update(2L, patch);
+        assertTrue(userRepository.findByBirthDateAfterAndBirthDateBefore(
+                LocalDate.of(1990, 1, 1), LocalDate.of(2000, 1, 1)).isEmpty());
+
+        userRepository.deleteByEmail("c@example.com");
+        assertEquals(2, userRepository.findByBirthDateAfterAndBirthDateBefore(
+                LocalDate.of(1970, 1, 1), LocalDate.of(2010, 1, 1)).size());
+    }
+
+    @Test
+    public void testConcurrentSavesAndDeletesShouldKeepIndexesConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long base = t * 1000L;
+            futures.add(executor.submit(() -> {
+                for (long i = base; i < base + 1000; i++) {
+                    userRepository.save(user(i, i + "@example.com"));
+                    if (i % 2 == 0) {
+                        assertTrue(userRepository.deleteByEmail(i + "@example.com"));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(4000, userRepository.count());
+        assertEquals(4000, userRepository.findAll().size());
+    }
+
+    @Test
+    public void testConcurrentUpdatesShouldKeepEmailsUniqueAndIndexesConsistent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger claimed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long base = t * 1000L;
+            futures.add(executor.submit(() -> {
+                for (long i = base; i < base + 500; i++) {
+                    userRepository.save(user(i, i + "@example.com"));
+                    User patch = new User().withLastName(i % 2 == 0 ? "Even" : "Odd");
+                    try {
+                        userRepository.update(i, patch.withEmail("shared" + (i - base) + "@example.com"));
+                        claimed.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        userRepository.update(i, patch);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(500, claimed.get());
+        for (int k = 0; k < 500; k++) {
+            assertTrue(userRepository.findByEmail("shared" + k + "@example.com").isPresent());
+        }
+        assertEquals(2000, userRepository.query(new UserQuery(null, null, null, "even", null, null), 4000).size());
+        assertEquals(2000, userRepository.search("odd", 4000).size());
+    }
+
+    @Test
+    public void testSaveWithoutIdShouldAssignUniqueIdsAboveExplicitOnes() throws Exception {
+        userRepository.save(user(5L, "explicit@example.com"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    ids.add(userRepository.save(user(null, thread + "-" + i + "@example.com")).getId());
+                }
+                return ids;
+            }));
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Future<List<Long>> future : futures) {
+            ids.addAll(future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8000, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id > 5L && id < userRepository.idLimit()));
+        assertEquals(8001, userRepository.count());
+    }
+
+    @Test
+    public void testSaveWithIdFarAboveIdLimitShouldThrow() {
+        long maxId = userRepository.idLimit() + (1L << 32);
+
+        assertThrows(IllegalArgumentException.class, () -> userRepository.save(user(1L << 62, "far@example.com")));
+        assertThrows(IllegalArgumentException.class, () -> userRepository.save(user(Long.MAX_VALUE, "max@example.com")));
+        assertEquals(0, userRepository.count());
+
+        userRepository.save(user(maxId, "edge@example.com"));
+        assertTrue(userRepository.save(user(null, "next@example.com")).getId() > maxId);
+    }
+
+    @Test
+    public void testFindByEmailAndFindAllByIdShouldUseIndexes() {
+        userRepository.save(user(1L, "a@example.com"));
+        userRepository.save(user(2L, "b@example.com"));
+
+        assertEquals(2L, userRepository.findByEmail("b@example.com").orElseThrow().getId());
+        assertFalse(userRepository.findByEmail("c@example.com").isPresent());
+        assertEquals(List.of(2L, 1L), userRepository.findAllById(List.of(2L, 3L, 1L)).stream()
+                .map(User::getId).toList());
+    }
+
+    @Test
+    public void testSearchShouldRankByFieldAndFollowWrites() {
+        userRepository.save(new User(1L, "jane@example.com", "Jane", "Smith", LocalDate.of(2000, 1, 1), "Baker street", "1"));
+        userRepository.save(new User(2L, "bob@example.com", "Bob", "Baker", LocalDate.of(2000, 1, 1), "Main street", "2"));
+        userRepository.save(new User(3L, "bakery@example.com", "Ann", "Lee", LocalDate.of(2000, 1, 1), "Elm road", "3"));
+
+        assertEquals(List.of(2L, 3L, 1L), userRepository.search("bak", 10).stream().map(User::getId).toList());
+        assertEquals(List.of(1L), userRepository.search("jane str", 10).stream().map(User::getId).toList());
+        assertEquals(1, userRepository.search("bak", 1).size());
+
+        User patch = new User().withLastName("Walker");
+        userRepository.update(2L, patch);
+        userRepository.deleteByEmail("bakery@example.com");
+        assertEquals(List.of(1L), userRepository.search("baker", 10).stream().map(User::getId).toList());
+    }
+
+    @Test
+    public void testQueryShouldCombinePredicatesWithAndWithoutIndexes() {
+        userRepository.save(new User(1L, "a@corp.com", "Ann", "Doe", LocalDate.of(1990, 5, 1), "address", "1"));
+        userRepository.save(new User(2L, "b@corp.com", "Bob", "Dorsey", LocalDate.of(2001, 5, 1), null, "2"));
+        userRepository.save(new User(3L, "c@mail.com", "Cid", "Doe", LocalDate.of(1991, 5, 1), "address", null));
+        for (long id = 4; id <= 20; id++) {
+            userRepository.save(new User(id, id + "@mail.com", "X", "Smith", LocalDate.of(1980, 1, 1), "address", "x"));
+        }
+
+        UserQuery corpDo = new UserQuery(null, null, "CORP.com", "do", null, null);
+        assertEquals(List.of(1L, 2L), userRepository.query(corpDo, 10).stream().map(User::getId).toList());
+
+        UserQuery bornInNineties = new UserQuery(LocalDate.of(1989, 12, 31), LocalDate.of(2000, 1, 1), null, null, null, true);
+        assertEquals(List.of(1L, 3L), userRepository.query(bornInNineties, 10).stream().map(User::getId).toList());
+
+        UserQuery withoutPhone = new UserQuery(null, null, null, null, false, null);
+        assertEquals(List.of(3L), userRepository.query(withoutPhone, 10).stream().map(User::getId).toList());
+        assertEquals(List.of(4L, 5L), userRepository.query(new UserQuery(null, null, null, "smith", true, true), 2)
+                .stream().map(User::getId).toList());
+    }
+
+    @Test
+    public void testNarrowBirthDateRangeShouldRecheckUsersUpdatedAfterIndexLookup() {
+        // Simulates an update that replaced the record but has not reached the birth date index yet
+        AtomicBoolean moved = new AtomicBoolean();
+        LocalUserRepository repository = new LocalUserRepository(new HeapUserRecordStore() {
+            @Override
+            public User get(long id) {
+                User user = super.get(id);
+                return moved.get() && user != null ? user.withBirthDate(LocalDate.of(1800, 1, 1)) : user;
+            }
+        }, null, false, 1, 0);
+        for (long id = 1; id <= 10; id++) {
+            repository.save(user(id, id + "@example.com").withBirthDate(LocalDate.of(1980, 1, 1).plusYears(id)));
+        }
+        LocalDate from = LocalDate.of(1982, 6, 1);
+        LocalDate to = LocalDate.of(1983, 6, 1);
+        assertEquals(1, repository.findByBirthDateAfterAndBirthDateBefore(from, to).size());
+
+        moved.set(true);
+        assertEquals(0, repository.findByBirthDateAfterAndBirthDateBefore(from, to).size());
+        assertTrue(repository.indexLookupCount() > 0);
+    }
+
+    @Test
+    public void testWideBirthDateRangeShouldScanColumnInBirthDateOrder() {
+        int users = 50_000;
+        for (long id = 1; id <= users; id++) {
+            userRepository.save(user(id, id + "@example.com"));
+        }
+        for (long id = 1; id <= users; id++) {
+            User patch = new User().withBirthDate(LocalDate.of(1950, 1, 1).plusDays((id * 7919) % 20_000));
+            userRepository.update(id, patch);
+        }
+        for (long id = 1; id <= users; id += 10) {
+            userRepository.deleteByEmail(id + "@example.com");
+        }
+
+        LocalDate from = LocalDate.of(1950, 1, 1).plusDays(999);
+        LocalDate to = LocalDate.of(1950, 1, 1).plusDays(19_000);
+        List<User> found = userRepository.findByBirthDateAfterAndBirthDateBefore(from, to);
+        List<User> expected = userRepository.stream()
+                .filter(user -> user.getBirthDate().isAfter(from) && user.getBirthDate().isBefore(to))
+                .toList();
+
+        assertEquals(expected.size(), found.size());
+        assertEquals(Set.copyOf(expected.stream().map(User::getId).toList()),
+                Set.copyOf(found.stream().map(User::getId).toList()));
+        for (int i = 1; i < found.size(); i++) {
+            assertFalse(found.get(i).getBirthDate().isBefore(found.get(i - 1).getBirthDate()));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.repository.storage.HeapUserRecordStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "user.store.shard-endpoint.enabled=true",
+        "user.store.id-stride=2",
+        "user.store.id-offset=1"
+})
+public class RemoteUserRepositoryTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testRouterShouldSpreadUsersOverLocalAndRemoteShard() {
+        RemoteUserRepository remote = new RemoteUserRepository("http://127.0.0.1:" + port, objectMapper);
+        assertEquals(2, remote.status().getIdStride());
+        ShardedUserRepository userRepository = new ShardedUserRepository(List.of(
+                new LocalUserRepository(new HeapUserRecordStore(), null, false, 2, 0), remote));
+        try {
+            for (int i = 0; i < 6; i++) {
+                userRepository.save(user(null, "user" + i + "@example.com", LocalDate.of(2000, 1, 1).plusDays(i)));
+            }
+            User odd = userRepository.save(user(11L, "odd@example.com", LocalDate.of(1999, 1, 1)));
+
+            assertEquals(11L, remote.findById(11L).orElseThrow().getId());
+            assertEquals(odd.getEmail(), userRepository.findByEmail("odd@example.com").orElseThrow().getEmail());
+            assertThrows(IllegalArgumentException.class,
+                    () -> userRepository.save(user(12L, "odd@example.com", LocalDate.of(1999, 1, 1))));
+            assertThrows(UserVersionConflictException.class,
+                    () -> userRepository.update(11L, new User().withFirstName("Jane"), 5L));
+            assertEquals("Jane", userRepository.update(11L, new User().withFirstName("Jane"), 0L).getFirstName());
+
+            Set<Long> remoteIds;
+            try (Stream<User> users = remote.stream()) {
+                remoteIds = users.map(User::getId).collect(Collectors.toSet());
+            }
+            assertTrue(remoteIds.stream().allMatch(id -> id % 2 == 1));
+            assertEquals(7, userRepository.count());
+            assertEquals(7, userRepository.findByBirthDateAfterAndBirthDateBefore(
+                    LocalDate.of(1998, 1, 1), LocalDate.of(2001, 1, 1)).size());
+
+            assertTrue(userRepository.deleteByEmail("odd@example.com"));
+            assertTrue(remote.findById(11L).isEmpty());
+            assertFalse(remote.deleteByEmail("odd@example.com"));
+        } finally {
+            userRepository.close();
+        }
+    }
+
+    @Test
+    public void testRequestToUnresponsiveShardShouldTimeOut() throws Exception {
+        try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            RemoteUserRepository remote = new RemoteUserRepository("http://127.0.0.1:" + silent.getLocalPort(),
+                    objectMapper, Duration.ofMillis(200));
+
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, remote::status);
+            assertInstanceOf(HttpTimeoutException.class, e.getCause());
+        }
+    }
+}
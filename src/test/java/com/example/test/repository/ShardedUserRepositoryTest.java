@@ -0,0 +1,112 @@
+package com.example.test.repository;
+
+import com.example.test.model.User;
+import com.example.test.repository.storage.HeapUserRecordStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedUserRepositoryTest {
+
+    private static final int SHARDS = 4;
+
+    private List<LocalUserRepository> shards;
+
+    private ShardedUserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        shards = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            shards.add(new LocalUserRepository(new HeapUserRecordStore(), null, false, SHARDS, shard));
+        }
+        userRepository = new ShardedUserRepository(shards);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userRepository.close();
+    }
+
+    @Test
+    public void testSaveShouldPlaceUserOnShardOfItsId() {
+        for (int i = 0; i < 20; i++) {
+            User saved = userRepository.save(user(null, "user" + i + "@example.com", LocalDate.of(2000, 1, 1)));
+
+            assertTrue(userRepository.shardOf(saved.getId()).existsById(saved.getId()));
+            assertEquals(saved.getEmail(), userRepository.findById(saved.getId()).orElseThrow().getEmail());
+        }
+        userRepository.save(user(100_003L, "explicit@example.com", LocalDate.of(2000, 1, 1)));
+
+        assertTrue(shards.get(3).existsById(100_003L));
+        assertEquals(21, userRepository.count());
+        assertEquals(21, shards.stream().mapToInt(LocalUserRepository::count).sum());
+    }
+
+    @Test
+    public void testSaveShouldRejectEmailTakenOnAnotherShard() {
+        userRepository.save(user(1L, "taken@example.com", LocalDate.of(2000, 1, 1)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> userRepository.save(user(2L, "taken@example.com", LocalDate.of(2000, 1, 1))));
+        userRepository.save(user(2L, "other@example.com", LocalDate.of(2000, 1, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> userRepository.update(2L, new User().withEmail("taken@example.com")));
+        assertEquals(2, userRepository.count());
+    }
+
+    @Test
+    public void testFindPageShouldMergeShardsInIdOrder() {
+        for (long id = 1; id <= 10; id++) {
+            userRepository.save(user(id, "user" + id + "@example.com", LocalDate.of(2000, 1, 1)));
+        }
+
+        List<Long> first = userRepository.findPage(null, 4).stream().map(User::getId).collect(Collectors.toList());
+        List<Long> next = userRepository.findPage(4L, 4).stream().map(User::getId).collect(Collectors.toList());
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), first);
+        assertEquals(List.of(5L, 6L, 7L, 8L), next);
+        assertEquals(List.of(2L, 9L), userRepository.findAllById(List.of(2L, 11L, 9L)).stream()
+                .map(User::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testStreamByBirthDateShouldMergeShardsInBirthDateOrder() {
+        for (long id = 1; id <= 12; id++) {
+            userRepository.save(user(id, "user" + id + "@example.com", LocalDate.of(2000, 1, 1).plusDays(13 - id)));
+        }
+
+        List<LocalDate> dates;
+        try (Stream<User> users = userRepository.streamByBirthDateAfterAndBirthDateBefore(
+                LocalDate.of(2000, 1, 2), LocalDate.of(2000, 1, 12))) {
+            dates = users.map(User::getBirthDate).collect(Collectors.toList());
+        }
+
+        assertEquals(9, dates.size());
+        for (int i = 1; i < dates.size(); i++) {
+            assertTrue(dates.get(i - 1).isBefore(dates.get(i)));
+        }
+        assertEquals(9, userRepository.findByBirthDateAfterAndBirthDateBefore(
+                LocalDate.of(2000, 1, 2), LocalDate.of(2000, 1, 12)).size());
+    }
+
+    @Test
+    public void testDeleteByEmailShouldFindUserOnAnyShard() {
+        userRepository.save(user(6L, "six@example.com", LocalDate.of(2000, 1, 1)));
+        long version = userRepository.version();
+
+        assertTrue(userRepository.executeInBatch(() -> userRepository.deleteByEmail("six@example.com")));
+        assertFalse(userRepository.deleteByEmail("six@example.com"));
+        assertFalse(shards.get(2).existsById(6L));
+        assertTrue(userRepository.version() > version);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedUserRecordStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testPutGetRemoveShouldRoundTripRecords() throws Exception {
+        try (MappedUserRecordStore store = new MappedUserRecordStore(directory.resolve("users.dat"), 16)) {
+            store.put(new User(1L, "a@example.com", "Jöhn", "Doe", LocalDate.of(2000, 1, 1), null, "123"));
+            store.put(new User(2L, "b@example.com", "Jane", "Doe", null, "Main St", null));
+
+            User first = store.get(1L);
+            assertEquals("Jöhn", first.getFirstName());
+            assertEquals(LocalDate.of(2000, 1, 1), first.getBirthDate());
+            assertNull(first.getAddress());
+            assertNull(store.get(2L).getBirthDate());
+
+            assertEquals("a@example.com", store.put(first.withEmail("new@example.com")).getEmail());
+            assertEquals("new@example.com", store.get(1L).getEmail());
+            assertEquals("b@example.com", store.remove(2L).getEmail());
+            assertNull(store.get(2L));
+            assertEquals(1, store.size());
+            assertEquals(1, store.stream().count());
+        }
+    }
+
+    @Test
+    public void testReopenShouldRestoreRecordsAndRepositoryIndexes() throws Exception {
+        Path file = directory.resolve("users.dat");
+        try (MappedUserRecordStore store = new MappedUserRecordStore(file, 16)) {
+            LocalUserRepository userRepository = new LocalUserRepository(store, null);
+            userRepository.recover();
+            for (long id = 1; id <= 1000; id++) {
+                userRepository.save(new User(id, id + "@example.com", "John", "Doe",
+                        LocalDate.of(1990, 1, 1).plusDays(id), null, null));
+            }
+            userRepository.deleteByEmail("5@example.com");
+        }
+
+        try (MappedUserRecordStore store = new MappedUserRecordStore(file, 16)) {
+            LocalUserRepository userRepository = new LocalUserRepository(store, null);
+            userRepository.recover();
+            assertEquals(999, userRepository.count());
+            assertFalse(userRepository.existsById(5L));
+            assertTrue(userRepository.deleteByEmail("6@example.com"));
+            assertEquals(8, userRepository.findByBirthDateAfterAndBirthDateBefore(
+                    LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 12)).size());
+        }
+    }
+}
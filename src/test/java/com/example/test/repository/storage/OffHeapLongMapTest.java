@@ -0,0 +1,31 @@
+package com.example.test.repository.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapLongMapTest {
+
+    @Test
+    public void testPutGetRemoveShouldSpanSeveralSegments() {
+        OffHeapLongMap map = new OffHeapLongMap(4, 4);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 31, key);
+        }
+        for (long key = 0; key < 10_000; key += 2) {
+            assertEquals(key, map.remove(key * 31));
+        }
+
+        assertEquals(5_000, map.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(key % 2 == 0 ? OffHeapLongMap.MISSING : key, map.get(key * 31));
+        }
+        map.put(31, -5);
+        assertEquals(-5, map.get(31));
+    }
+
+    @Test
+    public void testExpectedSizeBeyondMaximumCapacityShouldThrow() {
+        assertThrows(IllegalStateException.class, () -> new OffHeapLongMap(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.test.repository.storage;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserStorePersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    private UserRepository open(UserStorePersistence persistence) throws Exception {
+        LocalUserRepository userRepository = new LocalUserRepository(persistence);
+        userRepository.recover();
+        return userRepository;
+    }
+
+    @Test
+    public void testRecoverShouldReplaySnapshotAndJournal() throws Exception {
+        UserStorePersistence persistence = new UserStorePersistence(directory, FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE);
+        UserRepository userRepository = open(persistence);
+        userRepository.save(user(1L, "a@example.com"));
+        userRepository.save(user(2L, "b@example.com"));
+        persistence.snapshot();
+
+        User patch = new User().withEmail("c@example.com");
+        userRepository.update(1L, patch);
+        userRepository.deleteByEmail("b@example.com");
+        userRepository.save(user(3L, "b@example.com"));
+        persistence.close();
+
+        UserStorePersistence reopened = new UserStorePersistence(directory, FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE);
+        UserRepository recovered = open(reopened);
+        assertEquals(2, recovered.count());
+        assertEquals("c@example.com", recovered.findById(1L).orElseThrow().getEmail());
+        assertEquals(1L, recovered.findById(1L).orElseThrow().getVersion());
+        assertFalse(recovered.existsById(2L));
+        assertTrue(recovered.deleteByEmail("b@example.com"));
+        reopened.close();
+    }
+
+    @Test
+    public void testUpdateShouldNotBeVisibleWhenJournalAppendFails() throws Exception {
+        AtomicBoolean failAppends = new AtomicBoolean();
+        UserStorePersistence persistence = new UserStorePersistence(directory, FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE) {
+            @Override
+            public long appendPut(User user) {
+                if (failAppends.get()) {
+                    throw new UncheckedIOException(new IOException("No space left on device"));
+                }
+                return super.appendPut(user);
+            }
+        };
+        UserRepository userRepository = open(persistence);
+        userRepository.save(user(1L, "a@example.com"));
+
+        failAppends.set(true);
+        assertThrows(UncheckedIOException.class, () -> userRepository.update(1L, new User().withEmail("b@example.com")));
+
+        User stored = userRepository.findById(1L).orElseThrow();
+        assertEquals("a@example.com", stored.getEmail());
+        assertEquals(0L, stored.getVersion());
+        assertTrue(userRepository.findByEmail("b@example.com").isEmpty());
+        assertTrue(userRepository.findByEmail("a@example.com").isPresent());
+        persistence.close();
+    }
+
+    @Test
+    public void testRecoverShouldIgnoreTornJournalTail() throws Exception {
+        UserStorePersistence persistence = new UserStorePersistence(directory, FsyncPolicy.INTERVAL, 10, Long.MAX_VALUE);
+        UserRepository userRepository = open(persistence);
+        userRepository.save(user(1L, "a@example.com"));
+        persistence.close();
+
+        Path journal;
+        try (Stream<Path> files = Files.list(directory)) {
+            journal = files.filter(file -> file.toString().endsWith(".log")).max(Path::compareTo).orElseThrow();
+        }
+        Files.write(journal, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        UserStorePersistence reopened = new UserStorePersistence(directory, FsyncPolicy.INTERVAL, 10, Long.MAX_VALUE);
+        UserRepository recovered = open(reopened);
+        assertEquals(1, recovered.count());
+        recovered.save(user(2L, "b@example.com"));
+        reopened.close();
+
+        UserStorePersistence again = new UserStorePersistence(directory, FsyncPolicy.INTERVAL, 10, Long.MAX_VALUE);
+        assertEquals(2, open(again).count());
+        again.close();
+    }
+
+    @Test
+    public void testRecoverShouldLoadChunkedSnapshotAndIndexInBackground() throws Exception {
+        UserStorePersistence persistence = new UserStorePersistence(directory, FsyncPolicy.NEVER, 10, Long.MAX_VALUE);
+        UserRepository userRepository = open(persistence);
+        userRepository.executeInBatch(() -> {
+            for (long id = 1; id <= 20_000; id++) {
+                userRepository.save(user(id, id + "@example.com"));
+            }
+            return null;
+        });
+        persistence.snapshot();
+        persistence.close();
+
+        UserStorePersistence reopened = new UserStorePersistence(directory, FsyncPolicy.NEVER, 10, Long.MAX_VALUE);
+        LocalUserRepository recovered = new LocalUserRepository(new HeapUserRecordStore(), reopened, true);
+        recovered.recover();
+        assertEquals(20_000, recovered.count());
+        assertThrows(IllegalArgumentException.class, () -> recovered.save(user(20_001L, "12345@example.com")));
+        assertTrue(recovered.deleteByEmail("20000@example.com"));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!recovered.indexesReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(recovered.indexesReady());
+        assertEquals(19_999, recovered.findPage(null, 100_000).size());
+        reopened.close();
+    }
+
+    @Test
+    public void testAllocatedIdsShouldNotBeReusedAfterRestart() throws Exception {
+        UserStorePersistence persistence = new UserStorePersistence(directory, FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE);
+        UserRepository userRepository = open(persistence);
+        long first = userRepository.save(user(null, "a@example.com")).getId();
+        long second = userRepository.save(user(null, "b@example.com")).getId();
+        assertNotEquals(first, second);
+        assertEquals(first, userRepository.findByEmail("a@example.com").orElseThrow().getId());
+        userRepository.deleteByEmail("b@example.com");
+        persistence.close();
+
+        UserStorePersistence reopened = new UserStorePersistence(directory, FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE);
+        UserRepository recovered = open(reopened);
+        long third = recovered.save(user(null, "c@example.com")).getId();
+        assertTrue(third > Math.max(first, second));
+        assertTrue(third < recovered.idLimit());
+        reopened.close();
+    }
+}
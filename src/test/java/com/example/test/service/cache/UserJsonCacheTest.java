@@ -0,0 +1,98 @@
+package com.example.test.service.cache;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserJsonCacheTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final UserRepository userRepository = new LocalUserRepository();
+
+    private final UserJsonCache jsonCache = new UserJsonCache(objectMapper, userRepository, 100);
+
+    private byte[] write(User user, long stamp) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonCache.write(user, stamp, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testWriteShouldReuseFragmentUntilUserIsWritten() throws Exception {
+        User saved = userRepository.save(user(1L, "a@example.com"));
+        byte[] first = write(saved, jsonCache.stamp());
+        assertEquals(1, jsonCache.size());
+        assertArrayEquals(objectMapper.writeValueAsBytes(saved), first);
+
+        userRepository.update(1L, new User().withFirstName("Jane"));
+        assertEquals(0, jsonCache.size());
+        byte[] updated = write(userRepository.findById(1L).orElseThrow(), jsonCache.stamp());
+        assertTrue(new String(updated).contains("\"firstName\":\"Jane\""));
+    }
+
+    @Test
+    public void testWriteShouldKeepFragmentsAcrossWritesToOtherUsers() throws Exception {
+        long stamp = jsonCache.stamp();
+        User saved = userRepository.save(user(1L, "a@example.com"));
+        userRepository.save(user(2L, "b@example.com"));
+        userRepository.update(2L, new User().withFirstName("Jane"));
+
+        write(saved, stamp);
+        assertEquals(1, jsonCache.size());
+    }
+
+    @Test
+    public void testWriteShouldNotServeFragmentOfOtherVersion() throws Exception {
+        long stamp = jsonCache.stamp();
+        User saved = userRepository.save(user(1L, "a@example.com"));
+        User updated = userRepository.update(1L, new User().withFirstName("Jane"));
+        write(updated, stamp);
+
+        assertTrue(new String(write(saved, stamp)).contains("\"firstName\":\"John\""));
+        assertTrue(new String(write(updated, stamp)).contains("\"firstName\":\"Jane\""));
+    }
+
+    @Test
+    public void testWriteShouldNotKeepFragmentsLoadedBeforeDelete() throws Exception {
+        long stamp = jsonCache.stamp();
+        User saved = userRepository.save(user(1L, "a@example.com"));
+        userRepository.deleteByEmail("a@example.com");
+        userRepository.save(user(1L, "a@example.com").withFirstName("Jane"));
+
+        write(saved, stamp);
+        assertEquals(0, jsonCache.size());
+    }
+
+    @Test
+    public void testWriteArrayShouldMatchJackson() throws Exception {
+        List<User> users = List.of(userRepository.save(user(1L, "a@example.com")),
+                userRepository.save(user(2L, "b@example.com")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonCache.writeArray(users.stream(), jsonCache.stamp(), out);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(users), out.toByteArray());
+    }
+
+    @Test
+    public void testWriteLinesShouldWriteUsersBeyondMaxEntries() throws Exception {
+        UserJsonCache small = new UserJsonCache(objectMapper, userRepository, 1);
+        User first = userRepository.save(user(1L, "a@example.com"));
+        User second = userRepository.save(user(2L, "b@example.com"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        small.writeLines(List.of(first, second).stream(), small.stamp(), out);
+
+        assertEquals(1, small.size());
+        assertEquals(objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n",
+                out.toString());
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.test.service.cache;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserResponseCacheTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private static final User user = new User(1L, "test@example.com", "John", "Doe",
+            LocalDate.of(2000, 1, 1), "address", "testnum");
+
+    private UserResponseCache cache(int maxEntries, long maxBytes) {
+        return new UserResponseCache(new UserJsonCache(objectMapper, new LocalUserRepository(), 100), maxEntries, maxBytes, null);
+    }
+
+    private static String body(CachedResponse response) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            response.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void testGetShouldRecomputeOnlyWhenVersionChanges() throws Exception {
+        UserResponseCache cache = cache(10, 1 << 20);
+        AtomicInteger queries = new AtomicInteger();
+
+        String first = body(cache.get("all", 1, () -> {
+            queries.incrementAndGet();
+            return Stream.of(user);
+        }));
+        String second = body(cache.get("all", 1, () -> {
+            queries.incrementAndGet();
+            return Stream.of(user);
+        }));
+        assertEquals(first, second);
+        assertEquals(1, queries.get());
+        assertEquals("test@example.com", objectMapper.readTree(first).get(0).get("email").asText());
+
+        CachedResponse third = cache.get("all", 2, Stream::empty);
+        assertEquals("[]", body(third));
+        assertTrue(third.getETag().endsWith("-2\""));
+        assertEquals(cache.get("all", 1, Stream::empty).getEpoch(), third.getEpoch());
+    }
+
+    @Test
+    public void testGetShouldEvictLeastRecentlyUsedEntries() {
+        UserResponseCache cache = cache(2, 1 << 20);
+        body(cache.get("a", 1, Stream::empty));
+        body(cache.get("b", 1, Stream::empty));
+        body(cache.get("a", 1, Stream::empty));
+        body(cache.get("c", 1, Stream::empty));
+
+        AtomicInteger queries = new AtomicInteger();
+        body(cache.get("a", 1, () -> {
+            queries.incrementAndGet();
+            return Stream.empty();
+        }));
+        assertEquals(0, queries.get());
+        body(cache.get("b", 1, () -> {
+            queries.incrementAndGet();
+            return Stream.empty();
+        }));
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void testGetShouldStreamResultsTooLargeToCache() {
+        UserResponseCache cache = cache(10, 16);
+        AtomicInteger queries = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            String body = body(cache.get("all", 1, () -> {
+                queries.incrementAndGet();
+                return Stream.of(user, user);
+            }));
+            assertTrue(body.startsWith("[{") && body.endsWith("}]"));
+        }
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testConcurrentMissesShouldShareOneQuery() throws Exception {
+        UserResponseCache cache = cache(10, 1 << 20);
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CachedResponse response = cache.get("all", 1, () -> {
+            queries.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Stream.of(user);
+        });
+
+        AtomicReference<String> leader = new AtomicReference<>();
+        AtomicReference<String> follower = new AtomicReference<>();
+        Thread first = new Thread(() -> leader.set(body(response)));
+        first.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread second = new Thread(() -> follower.set(body(response)));
+        second.start();
+        while (second.isAlive() && second.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, queries.get());
+        assertEquals(leader.get(), follower.get());
+        assertTrue(leader.get().contains("test@example.com"));
+    }
+
+    @Test
+    public void testBlockedLeaderOutputShouldNotDelayOtherRequests() throws Exception {
+        UserResponseCache cache = cache(10, 1 << 20);
+        AtomicInteger queries = new AtomicInteger();
+        CachedResponse response = cache.get("all", 1, () -> {
+            queries.incrementAndGet();
+            return Stream.of(user);
+        });
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream stalled = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        Thread leader = new Thread(() -> {
+            try {
+                response.writeTo(stalled);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        leader.start();
+        try {
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            String body = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> body(response));
+            assertTrue(body.contains("test@example.com"));
+            assertEquals(1, queries.get());
+        } finally {
+            release.countDown();
+            leader.join();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.test.service.changes;
+
+import com.example.test.model.User;
+import com.example.test.model.dto.UserChange;
+import com.example.test.model.dto.UserChangeBatch;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserChangeLogTest {
+
+    private final UserRepository userRepository = new LocalUserRepository();
+
+    private final UserChangeLog changeLog = new UserChangeLog(userRepository, 4, 10, 50);
+
+    @AfterEach
+    public void tearDown() {
+        changeLog.close();
+    }
+
+    @Test
+    public void testPollShouldReturnWritesInOrder() throws Exception {
+        userRepository.save(user(1L, "a@example.com"));
+        userRepository.update(1L, new User().withFirstName("Jane"));
+        userRepository.deleteByEmail("a@example.com");
+
+        UserChangeBatch batch = changeLog.poll(0, 10).get(1, TimeUnit.SECONDS);
+        List<UserChange> changes = batch.getChanges();
+        assertEquals(3, batch.getLastSequence());
+        assertEquals(List.of(UserChange.Type.CREATED, UserChange.Type.UPDATED, UserChange.Type.DELETED),
+                changes.stream().map(UserChange::getType).toList());
+        assertEquals("Jane", changes.get(1).getUser().getFirstName());
+        assertNull(changes.get(2).getUser());
+
+        UserChangeBatch limited = changeLog.poll(1, 1).get(1, TimeUnit.SECONDS);
+        assertEquals(2, limited.getLastSequence());
+        assertEquals(1, limited.getChanges().size());
+    }
+
+    @Test
+    public void testPollWithoutNewChangesShouldWaitForNextWrite() throws Exception {
+        UserChangeLog waitingLog = new UserChangeLog(userRepository, 4, 10, 10_000);
+        try {
+            userRepository.save(user(1L, "a@example.com"));
+            CompletableFuture<UserChangeBatch> poll = waitingLog.poll(1, 10);
+            assertFalse(poll.isDone());
+
+            userRepository.save(user(2L, "b@example.com"));
+            UserChangeBatch batch = poll.get(5, TimeUnit.SECONDS);
+            assertEquals(1, batch.getChanges().size());
+            assertEquals(2L, batch.getChanges().get(0).getId());
+            assertEquals(2, batch.getLastSequence());
+        } finally {
+            waitingLog.close();
+        }
+    }
+
+    @Test
+    public void testPollWithoutChangesShouldTimeOutWithEmptyBatch() throws Exception {
+        UserChangeBatch batch = changeLog.poll(0, 10).get(5, TimeUnit.SECONDS);
+        assertTrue(batch.getChanges().isEmpty());
+        assertEquals(0, batch.getLastSequence());
+    }
+
+    @Test
+    public void testPollShouldRejectEvictedAndUnknownCursors() {
+        for (long id = 1; id <= 6; id++) {
+            userRepository.save(user(id, id + "@example.com"));
+        }
+
+        ExecutionException evicted = assertThrows(ExecutionException.class, () -> changeLog.poll(1, 10).get());
+        assertInstanceOf(UserChangesExpiredException.class, evicted.getCause());
+        ExecutionException unknown = assertThrows(ExecutionException.class, () -> changeLog.poll(7, 10).get());
+        assertInstanceOf(UserChangesExpiredException.class, unknown.getCause());
+        assertThrows(IllegalArgumentException.class, () -> changeLog.poll(2, 11));
+        assertEquals(4, changeLog.poll(2, 10).join().getChanges().size());
+    }
+
+    @Test
+    public void testConcurrentWritesShouldBeReadWithoutGaps() throws Exception {
+        UserChangeLog largeLog = new UserChangeLog(userRepository, 4096, 1000, 50);
+        try {
+            Thread[] writers = new Thread[4];
+            for (int w = 0; w < writers.length; w++) {
+                long first = w * 1000L + 1;
+                writers[w] = new Thread(() -> {
+                    for (long id = first; id < first + 250; id++) {
+                        userRepository.save(user(id, id + "@example.com"));
+                    }
+                });
+                writers[w].start();
+            }
+            long since = 0;
+            while (since < 1000) {
+                UserChangeBatch batch = largeLog.poll(since, 1000).get(5, TimeUnit.SECONDS);
+                for (UserChange change : batch.getChanges()) {
+                    assertEquals(++since, change.getSequence());
+                }
+                assertEquals(since, batch.getLastSequence());
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(1000, largeLog.lastSequence());
+        } finally {
+            largeLog.close();
+        }
+    }
+
+    @Test
+    public void testWriteShouldNotBlockOnOrStartThreadsForParkedPolls() throws Exception {
+        UserChangeLog tailedLog = new UserChangeLog(userRepository, 1024, 10, 10_000, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            List<CompletableFuture<Void>> polls = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                polls.add(tailedLog.poll(0, 10).thenRun(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            int threads = Thread.activeCount();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                userRepository.save(user(1L, "a@example.com"));
+                userRepository.save(user(2L, "b@example.com"));
+            });
+            Thread.sleep(200);
+            assertTrue(Thread.activeCount() <= threads + 2);
+            assertTrue(polls.stream().filter(CompletableFuture::isDone).count() < 1000);
+
+            release.countDown();
+            CompletableFuture.allOf(polls.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            tailedLog.close();
+        }
+    }
+}
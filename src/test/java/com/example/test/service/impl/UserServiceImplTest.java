@@ -0,0 +1,96 @@
+package com.example.test.service.impl;
+
+import com.example.test.mapper.UserMapper;
+import com.example.test.model.User;
+import com.example.test.model.dto.UserDto;
+import com.example.test.repository.LocalUserRepository;
+import com.example.test.service.cache.UserJsonCache;
+import com.example.test.service.cache.UserResponseCache;
+import com.example.test.service.changes.UserChangeLog;
+import com.example.test.service.pipeline.UserWritePipeline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserServiceImplTest {
+
+    private final AtomicInteger forces = new AtomicInteger();
+
+    private final LocalUserRepository userRepository = new LocalUserRepository() {
+        @Override
+        public void awaitDurable() {
+            forces.incrementAndGet();
+        }
+    };
+
+    private UserWritePipeline pipeline;
+
+    private UserChangeLog changeLog;
+
+    private UserServiceImpl userService(boolean pipelined) {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MockEnvironment env = new MockEnvironment().withProperty("user.min.age", "18");
+        pipeline = pipelined ? new UserWritePipeline(userRepository, 16, 8) : null;
+        changeLog = new UserChangeLog(userRepository, env);
+        return new UserServiceImpl(userRepository, new UserMapper(objectMapper),
+                new UserResponseCache(new UserJsonCache(objectMapper, userRepository, 100), 16, 1 << 20, null),
+                changeLog, pipeline, env);
+    }
+
+    private static UserDto userDto(String email, LocalDate birthDate) {
+        return new UserDto(null, email, "John", "Doe", birthDate, "address", "testnum");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        changeLog.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testAsyncWritesShouldAwaitDurabilityOnlyWhenRequested(boolean pipelined) throws Exception {
+        UserServiceImpl userService = userService(pipelined);
+
+        User created = userService.createUserAsync(userDto("a@example.com", LocalDate.of(2000, 1, 1)), false)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(0, forces.get());
+        User updated = userService.updateUserAsync(created.getId(), userDto("b@example.com", null), 0L, true)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(1, forces.get());
+        assertEquals("b@example.com", updated.getEmail());
+        assertEquals(1L, updated.getVersion());
+
+        userService.deleteUserAsync("b@example.com", true).get(5, TimeUnit.SECONDS);
+        assertEquals(2, forces.get());
+        assertEquals(0, userRepository.count());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testAsyncWritesShouldFailFuturesInsteadOfThrowing(boolean pipelined) {
+        UserServiceImpl userService = userService(pipelined);
+
+        CompletableFuture<User> tooYoung = userService.createUserAsync(userDto("a@example.com", LocalDate.now()), true);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> tooYoung.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+        CompletableFuture<Void> missing = userService.deleteUserAsync("missing@example.com", true);
+        e = assertThrows(ExecutionException.class, () -> missing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        assertEquals(0, userRepository.count());
+    }
+}
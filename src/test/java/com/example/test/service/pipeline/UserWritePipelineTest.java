@@ -0,0 +1,104 @@
+package com.example.test.service.pipeline;
+
+import com.example.test.model.User;
+import com.example.test.repository.LocalUserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.test.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserWritePipelineTest {
+
+    @Test
+    public void testSubmitShouldApplyWritesFromManyThreadsAndFailOnlyRejectedOnes() throws Exception {
+        LocalUserRepository userRepository = new LocalUserRepository();
+        UserWritePipeline pipeline = new UserWritePipeline(userRepository, 16, 8);
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<CompletableFuture<User>>> submitted = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String email = (i % 100) + "@example.com";
+                submitted.add(submitters.submit(() -> pipeline.submit(() -> userRepository.save(user(null, email)), false)));
+            }
+
+            int saved = 0;
+            int failed = 0;
+            for (Future<CompletableFuture<User>> future : submitted) {
+                try {
+                    future.get().get(5, TimeUnit.SECONDS);
+                    saved++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+                    failed++;
+                }
+            }
+            assertEquals(100, saved);
+            assertEquals(100, failed);
+            assertEquals(100, userRepository.count());
+        } finally {
+            submitters.shutdown();
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testDurableWriteShouldBeAcknowledgedOnlyAfterAwaitDurable() throws Exception {
+        CountDownLatch forcing = new CountDownLatch(1);
+        CountDownLatch forced = new CountDownLatch(1);
+        LocalUserRepository userRepository = new LocalUserRepository() {
+            @Override
+            public void awaitDurable() {
+                forcing.countDown();
+                try {
+                    assertTrue(forced.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        UserWritePipeline pipeline = new UserWritePipeline(userRepository, 16, 8);
+        try {
+            pipeline.submit(() -> userRepository.save(user(null, "a@example.com")), false).get(5, TimeUnit.SECONDS);
+            assertEquals(1, forcing.getCount());
+
+            CompletableFuture<User> durable = pipeline.submit(() -> userRepository.save(user(null, "b@example.com")), true);
+            assertTrue(forcing.await(5, TimeUnit.SECONDS));
+            assertTrue(userRepository.findByEmail("b@example.com").isPresent());
+            assertFalse(durable.isDone());
+
+            forced.countDown();
+            assertEquals("b@example.com", durable.get(5, TimeUnit.SECONDS).getEmail());
+        } finally {
+            forced.countDown();
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testCloseShouldApplyQueuedWritesAndRejectNewOnes() throws Exception {
+        LocalUserRepository userRepository = new LocalUserRepository();
+        UserWritePipeline pipeline = new UserWritePipeline(userRepository, 1000, 10);
+        List<CompletableFuture<User>> queued = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String email = i + "@example.com";
+            queued.add(pipeline.submit(() -> userRepository.save(user(null, email)), false));
+        }
+        pipeline.close();
+
+        CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(100, userRepository.count());
+        CompletableFuture<User> late = pipeline.submit(() -> userRepository.save(user(null, "late@example.com")), false);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}